@@ -0,0 +1,561 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Class for representing a game of many snakes on one board, each steered by
+ * a bot. Every cell of the board records which snake covers it (or that it
+ * holds an apple) in one shared grid, and each snake's body is a circular
+ * buffer of packed cells as in Snake. The board wraps around as in Snake, but
+ * has no robot or teleport.
+ * Each update is made in three phases:
+ * - In parallel, each snake decides its move and claims the cell its head
+ *   moves onto. A snake moving onto a body (including a tail about to move on,
+ *   as in Snake) dies; a snake whose claim finds the cell already claimed
+ *   dies along with the claimer, so every head-to-head collision kills both.
+ * - In parallel, each surviving snake moves, and each snake that died this
+ *   update is taken off the board. Every cell written is owned by just one
+ *   snake, so no locking is needed.
+ * - On one thread, eaten apples are replaced and dead snakes are respawned,
+ *   from the seeded generator, so an arena plays the same way whatever the
+ *   number of threads. A snake that finds no empty cell to respawn on waits,
+ *   and is respawned in a later update once a cell is free, before any
+ *   snake that died after it.
+ * Snakes are split between threads in ranges of LEAF_SNAKES.
+ * Private int width, height, cells - dimensions of the board
+ * Private int[] owner - snake number + 1 covering each cell, 0 if empty, or
+ * APPLE
+ * Private AtomicIntegerArray claims - snake number + 1 whose head is moving
+ * onto each cell in the current update, or 0
+ * Private int[][] bodies - circular buffer of packed cells of each snake
+ * Private int[] heads, tails, lengths - index of head and tail in, and number
+ * of body parts of, each snake
+ * Private int[] next - cell each snake's head moves onto in the current update
+ * Private byte[] directions - Direction ordinal of each snake's last move
+ * Private boolean[] alive - whether each snake is on the board
+ * Private boolean[] crashed - whether each snake dies in the current update
+ * Private boolean[] ate - whether each snake eats an apple in the current update
+ * Private int[] apples - cells holding an apple
+ * Private ArenaBot bot - controller of every snake
+ * Private boolean respawn - whether dead snakes start again
+ * Private int[] waiting - circular queue of dead snakes waiting for an empty
+ * cell to respawn on, in the order they died
+ * Private int waitingFirst, waitingCount - index of the first snake in, and
+ * number of snakes in, waiting
+ * Private SplittableRandom random - source of apple and spawn locations
+ * Private ForkJoinPool pool - threads that the snakes are updated on
+ * Private long ticks, deaths, eaten - number of updates made, snakes died and
+ * apples eaten so far
+ */
+public class Arena {
+
+    // Cell value in owner grid holding an apple
+    public static final int APPLE = -1;
+    // Length of a snake when it starts, stacked on one cell as in Snake
+    public static final int START_LENGTH = 6;
+    // Number of snakes below which a range is updated on one thread
+    private static final int LEAF_SNAKES = 64;
+    private static final Snake.Direction DIRECTIONS[] = Snake.Direction.values();
+
+    private int width;
+    private int height;
+    private int cells;
+    private int owner[];
+    private AtomicIntegerArray claims;
+    private int bodies[][];
+    private int heads[];
+    private int tails[];
+    private int lengths[];
+    private int next[];
+    private byte directions[];
+    private boolean alive[];
+    private boolean crashed[];
+    private boolean ate[];
+    private int apples[];
+    private ArenaBot bot;
+    private boolean respawn;
+    private int waiting[];
+    private int waitingFirst;
+    private int waitingCount;
+    private SplittableRandom random;
+    private ForkJoinPool pool;
+    private long ticks;
+    private long deaths;
+    private long eaten;
+
+    /**
+     * Sole Constructor - Initialises the board and places the snakes and
+     * apples on it at random
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     * @param snakes int - number of snakes
+     * @param appleCount int - number of apples on the board at a time
+     * @param bot ArenaBot object - controller of every snake
+     * @param respawn boolean - whether dead snakes start again
+     * @param seed long - seed for apple and spawn locations
+     * @param threads int - number of threads to update snakes on
+     */
+    public Arena(int width, int height, int snakes, int appleCount, ArenaBot bot, boolean respawn, long seed, int threads) {
+        if (width < 2 || height < 2 || (long) width * height > (1 << 26)) {
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+        }
+        if (snakes < 1 || appleCount < 0 || (long) snakes + appleCount > (long) width * height / 2) {
+            throw new IllegalArgumentException("Too many snakes or apples for the board: " + snakes + ", " + appleCount);
+        }
+        this.width = width;
+        this.height = height;
+        this.bot = bot;
+        this.respawn = respawn;
+        cells = width * height;
+        owner = new int[cells];
+        claims = new AtomicIntegerArray(cells);
+        bodies = new int[snakes][];
+        heads = new int[snakes];
+        tails = new int[snakes];
+        lengths = new int[snakes];
+        next = new int[snakes];
+        directions = new byte[snakes];
+        alive = new boolean[snakes];
+        crashed = new boolean[snakes];
+        ate = new boolean[snakes];
+        apples = new int[appleCount];
+        waiting = new int[snakes];
+        waitingFirst = 0;
+        waitingCount = 0;
+        random = new SplittableRandom(seed);
+        pool = new ForkJoinPool(threads);
+
+        for (int i = 0; i < snakes; i++) {
+            bodies[i] = new int[16];
+            spawn(i);
+        }
+        for (int a = 0; a < appleCount; a++) {
+            apples[a] = freeCell();
+            owner[apples[a]] = APPLE;
+        }
+    }
+
+    /**
+     * Accessor for private class variable width
+     * @return int - number of columns on the board
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Accessor for private class variable height
+     * @return int - number of rows on the board
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Accessor for the number of snakes
+     * @return int - number of snakes, alive or dead
+     */
+    public int getSnakes() { return lengths.length; }
+
+    /**
+     * Accessor for indexed element of private class variable alive
+     * @param snake int - index of snake
+     * @return boolean - whether the snake is on the board
+     */
+    public boolean isAlive(int snake) { return alive[snake]; }
+
+    /**
+     * Accessor for indexed element of private class variable lengths
+     * @param snake int - index of snake
+     * @return int - number of body parts of the snake
+     */
+    public int getLength(int snake) { return lengths[snake]; }
+
+    /**
+     * Accessor for the cell of an indexed body part of a snake
+     * @param snake int - index of snake
+     * @param i int - index of body part (0 is the head)
+     * @return int - packed cell index (y * width + x) of the body part
+     */
+    public int getBodyCell(int snake, int i) {
+        int body[] = bodies[snake];
+        return body[(heads[snake] + i) & (body.length - 1)];
+    }
+
+    /**
+     * Accessor for indexed element of private class variable directions
+     * @param snake int - index of snake
+     * @return Direction ENUM - direction of the snake's last move
+     */
+    public Snake.Direction getDirection(int snake) { return DIRECTIONS[directions[snake]]; }
+
+    /**
+     * Accessor for indexed element of private class variable owner
+     * @param cell int - packed cell index (y * width + x)
+     * @return int - snake number + 1 covering the cell, 0 if empty, or APPLE
+     */
+    public int getOwner(int cell) { return owner[cell]; }
+
+    /**
+     * Accessor for the number of apples
+     * @return int - number of apples on the board
+     */
+    public int getApples() { return apples.length; }
+
+    /**
+     * Accessor for indexed element of private class variable apples
+     * @param a int - index of apple
+     * @return int - packed cell index of the apple
+     */
+    public int getApple(int a) { return apples[a]; }
+
+    /**
+     * Accessor for private class variable ticks
+     * @return long - number of updates made
+     */
+    public long getTicks() { return ticks; }
+
+    /**
+     * Accessor for private class variable deaths
+     * @return long - number of times a snake has died
+     */
+    public long getDeaths() { return deaths; }
+
+    /**
+     * Accessor for private class variable eaten
+     * @return long - number of apples eaten
+     */
+    public long getEaten() { return eaten; }
+
+    /**
+     * Finds the cell next to the given one in the given direction, wrapping
+     * around the edges of the board
+     * @param cell int - packed cell index (y * width + x)
+     * @param move int - ordinal of the direction
+     * @return int - packed cell index of the neighbouring cell
+     */
+    public int step(int cell, int move) {
+        switch (move) {
+            case 0:
+                return (cell < width) ? cell + cells - width : cell - width;
+            case 2:
+                return (cell >= cells - width) ? cell + width - cells : cell + width;
+            case 3:
+                return (cell % width == 0) ? cell + width - 1 : cell - 1;
+            default:
+                return (cell % width == width - 1) ? cell - width + 1 : cell + 1;
+        }
+    }
+
+    /**
+     * Updates every snake once: decides and claims moves, moves the snakes
+     * and removes the dead ones, then replaces apples and respawns snakes
+     */
+    public void update() {
+        pool.invoke(new Phase(true, 0, lengths.length));
+        pool.invoke(new Phase(false, 0, lengths.length));
+
+        respawnWaiting();
+        for (int i = 0; i < lengths.length; i++) {
+            if (ate[i]) {
+                ate[i] = false;
+                eaten++;
+                replaceApple(next[i]);
+            }
+            if (crashed[i]) {
+                crashed[i] = false;
+                deaths++;
+                if (respawn) spawn(i);
+            }
+        }
+        ticks++;
+    }
+
+    /**
+     * Stops the threads of the pool once the arena will not be updated again
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Task making one of the parallel phases of an update for a range of
+     * snakes, splitting the range in two until it is small enough for one
+     * thread
+     * Private boolean claim - whether this is the claiming phase, else the
+     * moving phase
+     * Private int from - index of first snake in range (inclusive)
+     * Private int to - index of last snake in range (exclusive)
+     */
+    private class Phase extends RecursiveAction {
+
+        private boolean claim;
+        private int from;
+        private int to;
+
+        /**
+         * Sole Constructor - Initialises the phase and range of snakes
+         */
+        Phase(boolean claim, int from, int to) {
+            this.claim = claim;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         * Makes the phase for each snake of the range, or splits the range
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SNAKES) {
+                for (int i = from; i < to; i++) {
+                    if (!alive[i]) continue;
+                    if (claim) {
+                        claim(i);
+                    } else {
+                        move(i);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Phase(claim, from, mid), new Phase(claim, mid, to));
+        }
+    }
+
+    /**
+     * Decides the move of a snake and claims the cell its head moves onto,
+     * marking the snake as crashed if the cell is covered by a body, and both
+     * snakes as crashed if another snake has claimed it. Only reads the board.
+     * @param i int - index of snake
+     */
+    private void claim(int i) {
+        int move = bot.decide(this, i).ordinal();
+        if (move == (directions[i] ^ 2)) move = directions[i];
+        directions[i] = (byte) move;
+
+        int cell = step(bodies[i][heads[i]], move);
+        next[i] = cell;
+        if (owner[cell] > 0) {
+            crashed[i] = true;
+            return;
+        }
+        int other = claims.compareAndExchange(cell, 0, i + 1);
+        if (other != 0) {
+            crashed[i] = true;
+            crashed[other - 1] = true;
+        }
+    }
+
+    /**
+     * Moves a snake onto the cell it claimed, growing if it holds an apple,
+     * or takes the snake off the board if it crashed. Only writes cells that
+     * no other snake writes in the same phase.
+     * @param i int - index of snake
+     */
+    private void move(int i) {
+        int cell = next[i];
+        if (!crashed[i]) {
+            claims.set(cell, 0);
+            ate[i] = owner[cell] == APPLE;
+            int body[] = bodies[i];
+            int mask = body.length - 1;
+            heads[i] = (heads[i] - 1) & mask;
+            body[heads[i]] = cell;
+            owner[cell] = i + 1;
+            if (ate[i]) {
+                lengths[i]++;
+                if (lengths[i] > mask) growBody(i);
+            } else {
+                // Release the cell left by the tail, unless it is stacked
+                int oldTail = body[tails[i]];
+                tails[i] = (tails[i] - 1) & mask;
+                if (body[tails[i]] != oldTail) owner[oldTail] = 0;
+            }
+        } else {
+            claims.set(cell, 0);
+            int body[] = bodies[i];
+            for (int k = 0; k < lengths[i]; k++) {
+                owner[body[(heads[i] + k) & (body.length - 1)]] = 0;
+            }
+            alive[i] = false;
+        }
+    }
+
+    /**
+     * Replaces the circular buffer of a snake with one twice the size,
+     * keeping room for one more body part
+     * @param i int - index of snake
+     */
+    private void growBody(int i) {
+        int body[] = bodies[i];
+        int grown[] = new int[body.length * 2];
+        for (int k = 0; k < lengths[i]; k++) {
+            grown[k] = body[(heads[i] + k) & (body.length - 1)];
+        }
+        bodies[i] = grown;
+        heads[i] = 0;
+        tails[i] = lengths[i] - 1;
+    }
+
+    /**
+     * Places a snake at its starting length on a random empty cell, or makes
+     * it wait for one if the board is full or other snakes are waiting
+     * @param i int - index of snake
+     */
+    private void spawn(int i) {
+        int cell = (waitingCount == 0) ? freeCell() : -1;
+        if (cell < 0) {
+            waiting[(waitingFirst + waitingCount) % waiting.length] = i;
+            waitingCount++;
+            return;
+        }
+        place(i, cell);
+    }
+
+    /**
+     * Respawns waiting snakes in the order they died, for as long as there
+     * are empty cells to place them on
+     */
+    private void respawnWaiting() {
+        while (waitingCount > 0) {
+            int cell = freeCell();
+            if (cell < 0) return;
+            place(waiting[waitingFirst], cell);
+            waitingFirst = (waitingFirst + 1) % waiting.length;
+            waitingCount--;
+        }
+    }
+
+    /**
+     * Places a snake at its starting length on the given cell, moving in a
+     * random direction
+     * @param i int - index of snake
+     * @param cell int - packed cell index of an empty cell
+     */
+    private void place(int i, int cell) {
+        int body[] = bodies[i];
+        Arrays.fill(body, 0, START_LENGTH, cell);
+        heads[i] = 0;
+        tails[i] = START_LENGTH - 1;
+        lengths[i] = START_LENGTH;
+        directions[i] = (byte) random.nextInt(4);
+        owner[cell] = i + 1;
+        alive[i] = true;
+    }
+
+    /**
+     * Moves an eaten apple to a random empty cell
+     * @param cell int - packed cell of the eaten apple
+     */
+    private void replaceApple(int cell) {
+        for (int a = 0; a < apples.length; a++) {
+            if (apples[a] == cell) {
+                apples[a] = freeCell();
+                if (apples[a] >= 0) owner[apples[a]] = APPLE;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Picks a random empty cell, trying random cells first and then
+     * searching onwards from a random cell if the board is crowded
+     * @return int - packed cell index of an empty cell, or -1 if none
+     */
+    private int freeCell() {
+        for (int attempt = 0; attempt < 64; attempt++) {
+            int cell = random.nextInt(cells);
+            if (owner[cell] == 0) return cell;
+        }
+        int start = random.nextInt(cells);
+        for (int k = 0; k < cells; k++) {
+            int cell = (start + k) % cells;
+            if (owner[cell] == 0) return cell;
+        }
+        return -1;
+    }
+
+    /**
+     * Bot that moves each snake towards the nearest apple by the wrapped
+     * distance, avoiding cells covered by bodies where it can
+     */
+    public static class NearestAppleBot implements ArenaBot {
+
+        /**
+         * {@inheritDoc}
+         * Picks the free neighbouring cell closest to the nearest apple.
+         */
+        @Override
+        public Snake.Direction decide(Arena arena, int snake) {
+            int head = arena.getBodyCell(snake, 0);
+            int target = -1, nearest = Integer.MAX_VALUE;
+            for (int a = 0; a < arena.getApples(); a++) {
+                if (arena.getApple(a) < 0) continue;
+                int d = arena.distance(head, arena.getApple(a));
+                if (d < nearest) {
+                    nearest = d;
+                    target = arena.getApple(a);
+                }
+            }
+
+            int reverse = arena.getDirection(snake).ordinal() ^ 2;
+            int best = arena.getDirection(snake).ordinal(), bestScore = Integer.MAX_VALUE;
+            for (int move = 0; move < 4; move++) {
+                if (move == reverse) continue;
+                int cell = arena.step(head, move);
+                int score = (arena.getOwner(cell) > 0) ? Integer.MAX_VALUE - 1 : (target < 0) ? 0 : arena.distance(cell, target);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = move;
+                }
+            }
+            return DIRECTIONS[best];
+        }
+    }
+
+    /**
+     * Finds the number of moves between two cells on the wrapped board
+     * @param a int - packed cell index (y * width + x)
+     * @param b int - packed cell index (y * width + x)
+     * @return int - number of moves between the cells
+     */
+    public int distance(int a, int b) {
+        int dx = Math.abs(a % width - b % width);
+        int dy = Math.abs(a / width - b / width);
+        return Math.min(dx, width - dx) + Math.min(dy, height - dy);
+    }
+
+    /**
+     * Runs an arena of snakes steered by NearestAppleBots and prints the time
+     * taken by each update, and the rate of updates
+     * @param args String[] - optionally the number of snakes, board size,
+     * number of updates and number of threads
+     * @throws IllegalArgumentException if a level other than the open board
+     * is given with -Dsnake.level
+     */
+    public static void main(String[] args) {
+        int snakes = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int size = (args.length > 1) ? Integer.parseInt(args[1]) : 512;
+        int updates = (args.length > 2) ? Integer.parseInt(args[2]) : 5000;
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        // Walls and edges that do not wrap are not modelled, so a level is refused rather than ignored
+        if (!Level.getDefault().isOpen()) {
+            throw new IllegalArgumentException("Arena only plays on an open board, not the level " + System.getProperty("snake.level"));
+        }
+
+        Arena arena = new Arena(size, size, snakes, snakes / 2, new NearestAppleBot(), true, 1, threads);
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime();
+        for (int t = 0; t < updates; t++) {
+            long tick = System.nanoTime();
+            arena.update();
+            latency.record(System.nanoTime() - tick);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        arena.shutdown();
+
+        System.out.printf("%d snakes on %dx%d, %d threads: %d updates in %.2fs (%.0f updates/s), %d apples eaten, %d deaths%n",
+            snakes, size, size, threads, updates, seconds, updates / seconds, arena.getEaten(), arena.getDeaths());
+        latency.print(System.out, "update");
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Interface for an automated controller of the snakes in an Arena. Decisions
+ * for different snakes are made at the same time on different threads, so a
+ * bot must not keep state between calls that is not its own snake's, and may
+ * only read the arena while deciding.
+ */
+public interface ArenaBot {
+
+    /**
+     * Decides which direction one snake of the arena should move in next
+     *
+     * @param arena Arena object - arena being played, in its state before the move
+     * @param snake int - index of the snake to decide for
+     * @return Direction ENUM - direction to move in (the opposite of its last
+     * move is ignored)
+     */
+    Snake.Direction decide(Arena arena, int snake);
+}
@@ -0,0 +1,508 @@
+import java.util.Arrays;
+
+/**
+ * Class for an automated controller of the Snake that plays safely. Each
+ * decision searches breadth-first from the head for the shortest path to the
+ * apple on the board of the level, wrapping where it wraps, taking into
+ * account that body parts move out of the way as the tail follows the snake:
+ * a body cell can be entered once the tail has passed it (the cell the tail
+ * is leaving on a move still counts as body, as in Snake.update()). Walls are
+ * never entered, nor are teleporters (e.g. the robot corner), since a
+ * teleport would throw away the plan. A path is only
+ * taken if, after its first move, the snake can still reach its own tail or
+ * enough space to fit in.
+ * When there is no safe path, the snake falls back to a fixed Hamiltonian
+ * cycle of the board (on an open level of even width), and keeps following
+ * it until the body lies along it; a snake covering more than a quarter of
+ * the cycle follows it whenever it safely can. A board with the
+ * teleporter in its corner has an odd number of free cells, which no cycle
+ * on a grid can cover, so the cycle skips one cell next to the teleporter;
+ * the snake detours through it when the apple is there, and near the end
+ * of the game may leave it through the teleporter. Once the body lies
+ * along the cycle in order, the snake keeps to the cycle for the rest of the
+ * game, taking shortcuts ahead of its head only while it is short, so it
+ * cannot run into itself. Without a cycle (or while a cycle move is unsafe),
+ * the snake survives by taking the move that keeps its tail in reach, or
+ * failing that the most space.
+ * All searches reuse arrays sized for the board, stamped with a generation
+ * number instead of being cleared, so no decision allocates, and the time
+ * each decision takes is recorded.
+ * Private Level level - level of the board searched
+ * Private int cells - number of cells on the board searched
+ * Private int[] next - cell next to each cell in each direction (cell * 4 +
+ * Direction ordinal) that the head can ever enter, or -1 if the move is off
+ * an edge that does not wrap, or onto a wall or teleporter
+ * Private int[] order - position of each cell along the cycle in half steps,
+ * so the skipped cell sits between the two cycle cells it detours from, or -1
+ * if the cell is not on the cycle; null if the level has no cycle
+ * Private int[] cycleNext - cell after each cell along the cycle (the cell
+ * after the skipped cell is where its detour rejoins the cycle)
+ * Private int steps - number of half steps around the cycle
+ * Private int skipped - packed cell of the cell the cycle skips
+ * Private int detour - packed cell above the skipped cell, from which the
+ * snake detours through it
+ * Private boolean ordered - whether the body lies along the cycle in order,
+ * from the tail forwards to the head
+ * Private int span - half steps along the cycle from the tail to the head
+ * Private boolean joining - whether the last move was along the cycle, so
+ * the snake keeps following it until the body lies along it
+ * Private int[] freeAt - move on which each body cell can be entered
+ * Private int[] bodyStamp - generation of freeAt that each entry belongs to
+ * Private int[] seen - generation of the search that last reached each cell
+ * Private int[] distance - moves taken to reach each cell in the current search
+ * Private int[] firstMove - direction ordinal of the first move on the path to
+ * each cell in the current search
+ * Private int[] queue - cells waiting to be expanded in the current search
+ * Private int bodyGeneration, generation - current generations of freeAt and
+ * of the searches
+ * Private boolean reachedBody - whether the last flood reached a body cell,
+ * i.e. could follow the tail
+ * Private LatencyHistogram latency - time taken by each decision
+ */
+public class AutopilotBot implements SnakeBot {
+
+    private static final Snake.Direction DIRECTIONS[] = Snake.Direction.values();
+
+    private Level level;
+    private int cells;
+    private int next[];
+    private int order[];
+    private int cycleNext[];
+    private int steps;
+    private int skipped;
+    private int detour;
+    private boolean ordered;
+    private int span;
+    private boolean joining;
+    private int freeAt[];
+    private int bodyStamp[];
+    private int seen[];
+    private int distance[];
+    private int firstMove[];
+    private int queue[];
+    private int bodyGeneration;
+    private int generation;
+    private boolean reachedBody;
+    private LatencyHistogram latency;
+
+    /**
+     * Sole Default Constructor - Initialises the latency histogram; search
+     * arrays are made on the first decision, for the size of its board
+     */
+    public AutopilotBot() {
+        latency = new LatencyHistogram();
+    }
+
+    /**
+     * Accessor for private class variable latency
+     * @return LatencyHistogram object - time taken by each decision
+     */
+    public LatencyHistogram getLatency() { return latency; }
+
+    /**
+     * {@inheritDoc}
+     * Follows the cycle if the body lies along it, else takes the shortest
+     * safe path to the apple, or the cycle or the safest move if there is none.
+     */
+    @Override
+    public Snake.Direction decide(Snake snake) {
+        long start = System.nanoTime();
+        prepare(snake);
+
+        int head = snake.getBodyCell(0);
+        int length = snake.getLength();
+        int reverse = snake.getDirection().ordinal() ^ 2;
+        int move;
+        if (ordered) {
+            move = followCycle(snake, head);
+            if (move < 0) move = survive(head, reverse);
+        } else {
+            // A snake covering more than a quarter of the cycle joins it first
+            boolean join = joining || (order != null && 8 * length > steps);
+            move = join ? joinCycle(head, reverse, length) : -1;
+            if (move < 0) {
+                move = pathToApple(snake, head, reverse);
+                if (move >= 0 && !isSafe(next[head * 4 + move], length + 1)) move = -1;
+                if (move < 0 && !join) move = joinCycle(head, reverse, length);
+            }
+            if (move < 0) move = survive(head, reverse);
+        }
+
+        latency.record(System.nanoTime() - start);
+        return (move < 0) ? snake.getDirection() : DIRECTIONS[move];
+    }
+
+    /**
+     * Makes the search arrays for the board of the given game if needed, and
+     * records when each body cell can be entered
+     * @param snake Snake object - game being decided for
+     */
+    private void prepare(Snake snake) {
+        if (snake.getLevel() != level) {
+            level = snake.getLevel();
+            cells = level.getWidth() * level.getHeight();
+            // Work out the moves of the level once, so searches only look them up
+            next = new int[cells * 4];
+            for (int cell = 0; cell < cells; cell++) {
+                for (int move = 0; move < 4; move++) {
+                    int to = level.step(cell, move);
+                    next[cell * 4 + move] = (to >= 0 && !level.isBlocked(to)) ? to : -1;
+                }
+            }
+            buildCycle();
+            freeAt = new int[cells];
+            bodyStamp = new int[cells];
+            seen = new int[cells];
+            distance = new int[cells];
+            firstMove = new int[cells];
+            queue = new int[cells];
+            bodyGeneration = 0;
+            generation = 0;
+        }
+
+        // Body part i (head is 0) is left by the tail on move length - i, and
+        // can be entered from the move after. Stacked parts take the latest.
+        // The body is in order if each part is further along the cycle than
+        // the one behind it, winding less than once around.
+        bodyGeneration = nextGeneration(bodyGeneration, bodyStamp);
+        int length = snake.getLength();
+        ordered = order != null;
+        span = 0;
+        int behind = -1;
+        for (int i = length - 1; i >= 0; i--) {
+            int cell = snake.getBodyCell(i);
+            freeAt[cell] = length - i + 1;
+            bodyStamp[cell] = bodyGeneration;
+            if (ordered) {
+                int here = order[cell];
+                if (here < 0) {
+                    ordered = false;
+                } else if (behind >= 0) {
+                    int step = forward(behind, here);
+                    if (step == 0) ordered = false;
+                    span += step;
+                }
+                behind = here;
+            }
+        }
+        if (span >= steps) ordered = false;
+
+        // The last move was along the cycle if it was a step of at most 3 half
+        // steps (to the next cell, or into or out of the skipped cell)
+        joining = false;
+        if (order != null && length > 1) {
+            int from = order[snake.getBodyCell(1)];
+            int to = order[snake.getBodyCell(0)];
+            joining = from >= 0 && to >= 0 && forward(from, to) > 0 && forward(from, to) <= 3;
+        }
+    }
+
+    /**
+     * Builds the cycle for an open level of even width and at least 4 by 4
+     * cells, leaving order null for any other. The cycle runs along the top
+     * row, down and up a pair of columns hanging from it, down the right
+     * column, then up and down the remaining columns in pairs (joining each
+     * pair through the bottom row), and back up the left column. It covers
+     * every cell but the teleporter in the bottom right corner and the cell
+     * to its left, which is skipped: the cycle turns through the cell
+     * diagonally above it, so the snake can detour from the cell above the
+     * skipped cell, through it, to the cell on its left.
+     */
+    private void buildCycle() {
+        int width = level.getWidth();
+        int height = level.getHeight();
+        order = null;
+        cycleNext = null;
+        if (!level.isOpen() || width % 2 != 0 || width < 4 || height < 4) return;
+
+        int route[] = new int[cells - 2];
+        int n = 0;
+        for (int x = 0; x < width - 2; x++) route[n++] = x;
+        for (int y = 1; y < height - 2; y++) route[n++] = y * width + width - 3;
+        for (int y = height - 3; y > 0; y--) route[n++] = y * width + width - 2;
+        route[n++] = width - 2;
+        route[n++] = width - 1;
+        for (int y = 1; y < height - 1; y++) route[n++] = y * width + width - 1;
+        int from = n;
+        route[n++] = (height - 2) * width + width - 2;
+        route[n++] = (height - 2) * width + width - 3;
+        for (int x = width - 3; x > 0; x -= 2) {
+            if (x < width - 3) {
+                for (int y = 1; y < height - 1; y++) route[n++] = y * width + x;
+            }
+            route[n++] = (height - 1) * width + x;
+            route[n++] = (height - 1) * width + x - 1;
+            for (int y = height - 2; y > 0; y--) route[n++] = y * width + x - 1;
+        }
+
+        order = new int[cells];
+        cycleNext = new int[cells];
+        Arrays.fill(order, -1);
+        Arrays.fill(cycleNext, -1);
+        for (int i = 0; i < n; i++) {
+            order[route[i]] = 2 * i;
+            cycleNext[route[i]] = route[(i + 1) % n];
+        }
+        skipped = (height - 1) * width + width - 2;
+        detour = route[from];
+        order[skipped] = 2 * from + 1;
+        cycleNext[skipped] = route[from + 2];
+        steps = 2 * n;
+    }
+
+    /**
+     * Counts the half steps forwards along the cycle from one position to
+     * another
+     * @param from int - position moved from
+     * @param to int - position moved to
+     * @return int - half steps from 0 up to one less than steps
+     */
+    private int forward(int from, int to) {
+        int step = to - from;
+        return (step < 0) ? step + steps : step;
+    }
+
+    /**
+     * Chooses the move along the cycle for a body lying along it in order.
+     * The head only ever moves forwards into the cells between it and the
+     * tail, which are all free, so the body stays in order. It moves to the
+     * next cell of the cycle, or onto the skipped cell when the apple is
+     * there (leaving through the teleporter if that was the last free cell
+     * but one), or, while the snake and the cells it
+     * has skipped cover less than half the cycle, as far towards the apple
+     * as a neighbouring cell allows, always leaving room to carry on if it
+     * eats.
+     * @param snake Snake object - game being decided for
+     * @param head int - packed cell of the head
+     * @return int - direction ordinal of the move, or -1 if there is none
+     */
+    private int followCycle(Snake snake, int head) {
+        int apple = snake.getAppleCell();
+        int here = order[head];
+        int room = forward(here, order[snake.getBodyCell(snake.getLength() - 1)]);
+        int target = room;
+        if (apple >= 0 && order[apple] >= 0) target = Math.min(room, forward(here, order[apple]));
+
+        int best = -1, bestStep = 0, successor = -1;
+        for (int move = 0; move < 4; move++) {
+            int to = next[head * 4 + move];
+            if (to < 0 || order[to] < 0) continue;
+            // The last free cell wins the game wherever it is
+            if (to == apple && snake.getLength() == steps / 2) return move;
+            int step = forward(here, order[to]);
+            if (step == 0 || step >= room) continue;
+            if (to == cycleNext[head]) {
+                successor = move;
+            } else if (to == skipped) {
+                // Only entered from the cell above for the apple, with room to
+                // rejoin the cycle after eating it, or when it leaves just one
+                // free cell, which the teleporter next to it then leads onto.
+                // Passing through it otherwise would skip the cell it detours
+                // around, which the apple may be on.
+                if (to != apple || head != detour) continue;
+                if (step + 3 >= room && snake.getLength() + 1 != steps / 2) continue;
+            } else if (2 * (span + step) > steps || step + 2 >= room) {
+                continue;
+            }
+            if (step <= target && step > bestStep) {
+                best = move;
+                bestStep = step;
+            }
+        }
+        return (best >= 0) ? best : successor;
+    }
+
+    /**
+     * Chooses the move onto the next cell of the cycle while the body does
+     * not lie along the cycle yet, so that it will once the snake has
+     * followed the cycle for its length
+     * @param head int - packed cell of the head
+     * @param reverse int - direction ordinal that the snake cannot turn to
+     * @param length int - length of the snake
+     * @return int - direction ordinal of the move, or -1 if there is no
+     * cycle or its next cell is not safe to enter
+     */
+    private int joinCycle(int head, int reverse, int length) {
+        if (order == null || order[head] < 0) return -1;
+        int to = cycleNext[head];
+        for (int move = 0; move < 4; move++) {
+            if (move != reverse && next[head * 4 + move] == to) {
+                return (canEnter(to, 1) && isSafe(to, length)) ? move : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches breadth-first from the head for the shortest path to the apple
+     * @param snake Snake object - game being decided for
+     * @param head int - packed cell of the head
+     * @param reverse int - direction ordinal that the snake cannot turn to
+     * @return int - direction ordinal of the first move of the path, or -1 if
+     * the apple cannot be reached
+     */
+    private int pathToApple(Snake snake, int head, int reverse) {
+        int apple = snake.getAppleCell();
+        if (apple < 0) return -1;
+        int end = search(head, reverse, apple);
+        return (end >= 0) ? firstMove[end] : -1;
+    }
+
+    /**
+     * Checks whether the snake can carry on safely after moving onto the
+     * given cell: it can follow its tail, or has room for its whole body
+     * @param cell int - packed cell the head moves onto
+     * @param length int - length of the snake after the move
+     * @return boolean - true if the move is safe, else false
+     */
+    private boolean isSafe(int cell, int length) {
+        return flood(cell, length) >= length || reachedBody;
+    }
+
+    /**
+     * Chooses the move that keeps the tail in reach, or failing that leaves
+     * the most space, when there is no safe path to the apple
+     * @param head int - packed cell of the head
+     * @param reverse int - direction ordinal that the snake cannot turn to
+     * @return int - direction ordinal of the move, or -1 if every move dies
+     */
+    private int survive(int head, int reverse) {
+        int best = -1;
+        long bestScore = -1;
+        for (int move = 0; move < 4; move++) {
+            if (move == reverse) continue;
+            int cell = level.step(head, move);
+            long score;
+            if (cell < 0 || level.isWall(cell)) {
+                continue;
+            } else if (level.isTeleporter(cell)) {
+                // A teleport is better than certain death
+                score = 0;
+            } else if (!canEnter(cell, 1)) {
+                continue;
+            } else {
+                int space = flood(cell, cells);
+                score = (reachedBody ? cells : 0) + space;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the cells that can be reached from the given cell, entered on
+     * the first move, allowing for body cells being left by the tail
+     * @param start int - packed cell to start from
+     * @param limit int - number of cells after which to stop counting
+     * @return int - number of cells reached, at most limit
+     */
+    private int flood(int start, int limit) {
+        reachedBody = false;
+        generation = nextGeneration(generation, seen);
+        seen[start] = generation;
+        distance[start] = 1;
+        queue[0] = start;
+        int read = 0, write = 1;
+        while (read < write && write < limit) {
+            int cell = queue[read++];
+            int next = distance[cell] + 1;
+            for (int move = 0; move < 4; move++) {
+                int to = this.next[cell * 4 + move];
+                if (!canEnter(to, next) || seen[to] == generation) continue;
+                if (bodyStamp[to] == bodyGeneration) reachedBody = true;
+                seen[to] = generation;
+                distance[to] = next;
+                queue[write++] = to;
+            }
+        }
+        return Math.min(write, limit);
+    }
+
+    /**
+     * Searches breadth-first from the head until the target is reached,
+     * recording the first move of the path to each cell
+     * @param head int - packed cell of the head
+     * @param reverse int - direction ordinal that the snake cannot turn to
+     * @param target int - packed cell to search for
+     * @return int - target if it was reached, else -1
+     */
+    private int search(int head, int reverse, int target) {
+        generation = nextGeneration(generation, seen);
+        seen[head] = generation;
+        int read = 0, write = 0;
+        for (int move = 0; move < 4; move++) {
+            int to = next[head * 4 + move];
+            if (move == reverse || !canEnter(to, 1) || seen[to] == generation) continue;
+            if (to == target) {
+                firstMove[to] = move;
+                return to;
+            }
+            seen[to] = generation;
+            distance[to] = 1;
+            firstMove[to] = move;
+            queue[write++] = to;
+        }
+        while (read < write) {
+            int cell = queue[read++];
+            int next = distance[cell] + 1;
+            for (int move = 0; move < 4; move++) {
+                int to = this.next[cell * 4 + move];
+                if (!canEnter(to, next) || seen[to] == generation) continue;
+                seen[to] = generation;
+                distance[to] = next;
+                firstMove[to] = firstMove[cell];
+                if (to == target) return to;
+                queue[write++] = to;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the head can move onto the given cell on the given move
+     * @param cell int - packed cell index (y * width + x) from next, or -1 
+     * if it can never be entered
+     * @param move int - number of moves from now
+     * @return boolean - true if the cell can be entered and is free by then
+     */
+    private boolean canEnter(int cell, int move) {
+        return cell >= 0 && (bodyStamp[cell] != bodyGeneration || freeAt[cell] <= move);
+    }
+
+    /**
+     * Moves on to the next generation of a stamped array, clearing the array
+     * on the rare occasion that the generation number wraps around
+     * @param current int - current generation
+     * @param stamps int[] - array stamped with generations
+     * @return int - next generation
+     */
+    private static int nextGeneration(int current, int[] stamps) {
+        if (current == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            return 1;
+        }
+        return current + 1;
+    }
+
+    /**
+     * Plays headless games with the autopilot and prints the scores along
+     * with the time taken by each decision
+     * @param args String[] - optionally the number of games and first seed
+     */
+    public static void main(String[] args) {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 1;
+        AutopilotBot bot = new AutopilotBot();
+        BatchResult result = new BatchResult();
+        for (int i = 0; i < games; i++) {
+            HeadlessGame game = new HeadlessGame(bot, new Snake(seed + i));
+            game.play(1_000_000);
+            result.add(game.getSnake(), game.getTicks());
+        }
+        result.print(System.out);
+        bot.getLatency().print(System.out, "decision");
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.PrintStream;
+
+/**
+ * Class for the aggregated outcome of a batch of headless games. Results of
+ * separate batches can be merged, so that games can be played in parallel and 
+ * combined afterwards.
+ * Private int games - number of games played
+ * Private int wins - number of games where the snake filled the board
+ * Private long totalScore - sum of the scores of every game
+ * Private int minScore - lowest score of any game
+ * Private int maxScore - highest score of any game
+ * Private long totalLength - sum of the final lengths of every game
+ * Private long totalTicks - sum of the updates made in every game
+ */
+public class BatchResult {
+
+    private int games;
+    private int wins;
+    private long totalScore;
+    private int minScore;
+    private int maxScore;
+    private long totalLength;
+    private long totalTicks;
+
+    /**
+     * Sole Default Constructor - Initialises an empty result
+     */
+    public BatchResult() {
+        minScore = Integer.MAX_VALUE;
+        maxScore = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Adds the outcome of a single finished game to the result
+     * @param snake Snake object - finished game
+     * @param ticks long - number of updates made in the game
+     */
+    public void add(Snake snake, long ticks) {
+        int score = snake.getLength() - 6;
+        games++;
+        if (snake.isWon()) wins++;
+        totalScore += score;
+        minScore = Math.min(minScore, score);
+        maxScore = Math.max(maxScore, score);
+        totalLength += snake.getLength();
+        totalTicks += ticks;
+    }
+
+    /**
+     * Adds the games of another result to this result
+     * @param other BatchResult object - result to merge in
+     * @return BatchResult object - this result
+     */
+    public BatchResult merge(BatchResult other) {
+        games += other.games;
+        wins += other.wins;
+        totalScore += other.totalScore;
+        minScore = Math.min(minScore, other.minScore);
+        maxScore = Math.max(maxScore, other.maxScore);
+        totalLength += other.totalLength;
+        totalTicks += other.totalTicks;
+        return this;
+    }
+
+    /**
+     * Accessor for private class variable games
+     * @return int - number of games played
+     */
+    public int getGames() { return games; }
+
+    /**
+     * Accessor for private class variable wins
+     * @return int - number of games where the snake filled the board
+     */
+    public int getWins() { return wins; }
+
+    /**
+     * Accessor for private class variable totalScore
+     * @return long - sum of the scores of every game
+     */
+    public long getTotalScore() { return totalScore; }
+
+    /**
+     * Accessor for private class variable minScore
+     * @return int - lowest score of any game
+     */
+    public int getMinScore() { return minScore; }
+
+    /**
+     * Accessor for private class variable maxScore
+     * @return int - highest score of any game
+     */
+    public int getMaxScore() { return maxScore; }
+
+    /**
+     * Accessor for private class variable totalLength
+     * @return long - sum of the final lengths of every game
+     */
+    public long getTotalLength() { return totalLength; }
+
+    /**
+     * Accessor for private class variable totalTicks
+     * @return long - sum of the updates made in every game
+     */
+    public long getTotalTicks() { return totalTicks; }
+
+    /**
+     * Prints a summary of the result
+     * @param out PrintStream object - stream to print to
+     */
+    public void print(PrintStream out) {
+        if (games == 0) {
+            out.println("No games played");
+            return;
+        }
+        out.printf("games=%d wins=%d score mean=%.2f min=%d max=%d length mean=%.2f ticks mean=%.1f total=%d%n",
+            games, wins, (double) totalScore / games, minScore, maxScore,
+            (double) totalLength / games, (double) totalTicks / games, totalTicks);
+    }
+}
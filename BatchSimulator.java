@@ -0,0 +1,123 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Class for playing many seeded headless games in parallel, e.g. for scoring
+ * automated controllers against each other. Games are independent, so the 
+ * range of seeds is split recursively across a fork/join pool, each leaf 
+ * plays its games on one thread with its own bot and result, and the results
+ * are merged on the way back up. Game i of a run uses seed firstSeed + i, so 
+ * a run is reproducible whatever the number of threads.
+ * Private Supplier[SnakeBot] bots - creates a fresh bot for each game
+ * Private long maxTicks - maximum number of updates made in each game
+ * Private ForkJoinPool pool - threads that games are played on
+ */
+public class BatchSimulator {
+
+    // Number of games below which a range of seeds is played on one thread
+    private static final int LEAF_GAMES = 16;
+
+    private Supplier<SnakeBot> bots;
+    private long maxTicks;
+    private ForkJoinPool pool;
+
+    /**
+     * Sole Constructor - Initialises the bot supplier, limit on the length of
+     * each game and the pool of threads to play games on
+     * @param bots Supplier object - creates a fresh bot for each game
+     * @param maxTicks long - maximum number of updates made in each game
+     * @param threads int - number of threads to play games on
+     */
+    public BatchSimulator(Supplier<SnakeBot> bots, long maxTicks, int threads) {
+        this.bots = bots;
+        this.maxTicks = maxTicks;
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Plays the given number of games with consecutive seeds and aggregates
+     * their outcomes
+     * @param firstSeed long - seed of the first game
+     * @param games int - number of games to play
+     * @return BatchResult object - aggregated outcome of every game
+     */
+    public BatchResult run(long firstSeed, int games) {
+        return pool.invoke(new Batch(firstSeed, 0, games));
+    }
+
+    /**
+     * Stops the threads of the pool once no more batches will be run
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Task playing the games for a range of seeds, splitting the range in two
+     * until it is small enough to play on one thread
+     * Private long firstSeed - seed of game 0 of the run
+     * Private int from - index of first game in range (inclusive)
+     * Private int to - index of last game in range (exclusive)
+     */
+    private class Batch extends RecursiveTask<BatchResult> {
+
+        private long firstSeed;
+        private int from;
+        private int to;
+
+        /**
+         * Sole Constructor - Initialises the range of games to play
+         */
+        Batch(long firstSeed, int from, int to) {
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         * Plays the games of the range, or splits the range in two
+         */
+        @Override
+        protected BatchResult compute() {
+            if (to - from <= LEAF_GAMES) {
+                BatchResult result = new BatchResult();
+                for (int i = from; i < to; i++) {
+                    HeadlessGame game = new HeadlessGame(bots.get(), new Snake(firstSeed + i));
+                    long ticks = game.play(maxTicks);
+                    result.add(game.getSnake(), ticks);
+                }
+                return result;
+            }
+
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(firstSeed, from, mid);
+            left.fork();
+            BatchResult right = new Batch(firstSeed, mid, to).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    /**
+     * Plays a batch of games with GreedyBots on every core and prints the
+     * aggregated outcome and rate of updates.
+     * @param args String[] - optionally the number of games, number of 
+     * threads and first seed
+     */
+    public static void main(String[] args) {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+
+        BatchSimulator simulator = new BatchSimulator(GreedyBot::new, 1_000_000, threads);
+        long start = System.nanoTime();
+        BatchResult result = simulator.run(seed, games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.shutdown();
+
+        result.print(System.out);
+        System.out.printf("%d threads, %.2fs (%.0f games/s, %.0f updates/s)%n", threads, seconds,
+            games / seconds, result.getTotalTicks() / seconds);
+    }
+}
@@ -0,0 +1,357 @@
+import java.awt.BorderLayout;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
+
+import javax.swing.JFrame;
+
+/**
+ * Class for playing the Snake game in a window of its own, without the
+ * maze-environment. It is the Renderer and GameClock of the game framework,
+ * and drives the game from a thread of its own with active rendering: the
+ * thread runs the updates as they fall due and shows the result on a
+ * back-buffered canvas, rather than waiting for Swing to repaint.
+ * The board is kept in an accelerated off-screen image, on which only the
+ * cells that have changed since the last frame are painted; each frame then
+ * copies that image to the back buffer (scaled to the size of the canvas, so
+ * large boards fit on the screen) and flips it. Frames are shown at most at
+ * the given rate, with any changes made in between shown together.
+ * The maze-environment, through the SnakeController, remains the way to play
+ * the game for the competition.
+ * Private static int FPS - most frames shown a second (set with
+ * -Dsnake.fps=n, 120 by default)
+ * Private GameFrame gameFrame - Game Framework object
+ * Private StatusPanel status - Swing Panel showing the status of the game
+ * Private int width, height - dimensions of the board
+ * Private int cellSize - size of a cell in the off-screen image, in pixels
+ * Private Level level - level of the game, whose walls and teleporters (e.g.
+ * the robot in the bottom-right corner) are painted under the snake
+ * Private boolean[] body - whether each cell is covered by the snake
+ * Private int apple - packed cell index of the apple, or -1 if not drawn yet
+ * Private int[] dirty - packed cells changed since the last frame
+ * Private boolean[] queued - whether each cell is already in dirty
+ * Private int dirtyCount - number of cells in dirty
+ * Private boolean repaintAll - whether the whole board needs to be painted
+ * Private VolatileImage board - off-screen image of the board
+ * Private long framePeriod - shortest time between frames, in nanoseconds
+ * Private LatencyHistogram frameTimes - time taken to paint and show frames,
+ * printed when M is pressed or, with -Dsnake.metrics=true, when the game ends
+ * Private volatile boolean running - whether the game thread should carry on
+ * Private volatile boolean exposed - whether the canvas needs showing again
+ * (e.g. after being resized or uncovered) even if the game has not changed
+ * Private volatile boolean dumpRequested - whether the frame times should be
+ * printed by the game thread
+ */
+public class CanvasGame extends Canvas implements Renderer, GameClock, Runnable {
+
+    private static final int FPS = Math.max(1, Math.min(1000, Integer.getInteger("snake.fps", 120)));
+    // Largest size of the window's board, in pixels, when choosing cell sizes
+    private static final int MAX_BOARD_PIXELS = 900;
+    private static final int MAX_CELL_SIZE = 24;
+    // Changes recorded between frames before painting the whole board instead
+    private static final int MAX_DIRTY = 4096;
+    private static final Color SNAKE_COLOUR = new Color(251, 133, 0);
+    private static final Color EMPTY_COLOUR = new Color(18, 18, 18);
+    private static final Color APPLE_COLOUR = new Color(0, 200, 0);
+    private static final Color ROBOT_COLOUR = new Color(0, 0, 255);
+    private static final Color WALL_COLOUR = new Color(90, 90, 110);
+
+    private GameFrame gameFrame;
+    private StatusPanel status;
+    private int width;
+    private int height;
+    private int cellSize;
+    private Level level;
+    private boolean body[];
+    private int apple;
+    private int dirty[];
+    private boolean queued[];
+    private int dirtyCount;
+    private boolean repaintAll;
+    private VolatileImage board;
+    private long framePeriod;
+    private LatencyHistogram frameTimes;
+    private volatile boolean running;
+    private volatile boolean exposed;
+    private volatile boolean dumpRequested;
+
+    /**
+     * Sole Constructor - Initialises the game framework for the given game,
+     * drawing onto and clocked by this canvas, and the record of the cells
+     * shown on it
+     * @param snake Snake object - game to play
+     * @param status StatusPanel object - panel to show the status of the game on
+     */
+    public CanvasGame(Snake snake, StatusPanel status) {
+        this.status = status;
+        width = snake.getWidth();
+        height = snake.getHeight();
+        cellSize = Math.max(1, Math.min(MAX_CELL_SIZE, MAX_BOARD_PIXELS / Math.max(width, height)));
+        level = snake.getLevel();
+        body = new boolean[width * height];
+        queued = new boolean[width * height];
+        dirty = new int[Math.min(width * height, MAX_DIRTY)];
+        apple = -1;
+        repaintAll = true;
+        framePeriod = 1_000_000_000L / FPS;
+        frameTimes = new LatencyHistogram();
+
+        gameFrame = new GameFrame(this, this, snake);
+        setPreferredSize(new Dimension(width * cellSize, height * cellSize));
+        setBackground(EMPTY_COLOUR);
+        setFocusable(true);
+        addKeyListener(gameFrame);
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_M) dumpRequested = true;
+            }
+        });
+    }
+
+    /**
+     * Accessor for private class variable gameFrame
+     * @return GameFrame object - framework of the game being played
+     */
+    public GameFrame getGameFrame() { return gameFrame; }
+
+    /**
+     * Runs the game until stop() is called: runs the updates that have
+     * fallen due, draws them into the record of changed cells and shows a
+     * frame if anything changed and the last frame was long enough ago, then
+     * waits for the next update or frame. Runs on the game thread.
+     */
+    @Override
+    public void run() {
+        running = true;
+        gameFrame.reset();
+        boolean stale = true;
+        long lastFrame = System.nanoTime() - framePeriod;
+
+        while (running) {
+            long now = System.nanoTime();
+            gameFrame.advance(now);
+            if (gameFrame.draw(false)) stale = true;
+            status.setStatus(gameFrame.getSnake());
+
+            if ((stale || exposed) && now - lastFrame >= framePeriod) {
+                exposed = false;
+                stale = false;
+                lastFrame = now;
+                showFrame();
+                frameTimes.record(System.nanoTime() - now);
+            }
+            if (dumpRequested) {
+                dumpRequested = false;
+                frameTimes.print(System.out, "frame");
+            }
+            // Wake for the next update, or to show changes held back by the frame rate
+            gameFrame.awaitTick(lastFrame + framePeriod > now ? lastFrame + framePeriod : now + framePeriod);
+        }
+        if (Boolean.getBoolean("snake.metrics")) frameTimes.print(System.out, "frame");
+    }
+
+    /**
+     * Asks the game thread to finish after its current frame
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Marks the whole board as empty, to be painted on the next frame.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(body, false);
+        clearDirty();
+        repaintAll = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Records the block of the cell and marks it to be painted on the next
+     * frame. Moving the apple also marks the cell it has left. Walls and
+     * teleporters are painted from the level, so are only marked.
+     */
+    @Override
+    public void drawBlock(Block type, int x, int y) {
+        int cell = y * width + x;
+        if (type == Block.APPLE) {
+            if (apple >= 0) markDirty(apple);
+            apple = cell;
+        } else {
+            body[cell] = (type == Block.SNAKE);
+        }
+        markDirty(cell);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The game thread keeps to the game's own schedule, so the delay is not
+     * needed.
+     */
+    @Override
+    public void updateDelay(int delay) {}
+
+    /**
+     * Called by Swing when the canvas has been resized or uncovered; asks
+     * the game thread to show the board again rather than painting it here
+     * @param g Graphics object - unused
+     */
+    @Override
+    public void paint(Graphics g) {
+        exposed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only asks for the board to be shown again, as the background is
+     * painted over by every frame.
+     */
+    @Override
+    public void update(Graphics g) {
+        exposed = true;
+    }
+
+    /**
+     * Adds a cell to the cells to be painted on the next frame, unless it is
+     * already there. Falls back to painting the whole board if too many
+     * cells change between frames.
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void markDirty(int cell) {
+        if (repaintAll || queued[cell]) return;
+        if (dirtyCount == dirty.length) {
+            clearDirty();
+            repaintAll = true;
+            return;
+        }
+        queued[cell] = true;
+        dirty[dirtyCount++] = cell;
+    }
+
+    /**
+     * Forgets the cells waiting to be painted
+     */
+    private void clearDirty() {
+        for (int i = 0; i < dirtyCount; i++) {
+            queued[dirty[i]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Paints the changed cells onto the off-screen image of the board,
+     * recreating or repainting it if its contents were lost, then copies it
+     * to the back buffer and shows it, repeating until nothing was lost
+     */
+    private void showFrame() {
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null) return;
+
+        do {
+            int valid = (board == null) ? VolatileImage.IMAGE_INCOMPATIBLE : board.validate(getGraphicsConfiguration());
+            if (valid == VolatileImage.IMAGE_INCOMPATIBLE) {
+                board = createVolatileImage(width * cellSize, height * cellSize);
+                if (board == null) return;
+            }
+            if (valid != VolatileImage.IMAGE_OK) repaintAll = true;
+            paintBoard();
+        } while (board.contentsLost());
+
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                g.drawImage(board, 0, 0, getWidth(), getHeight(), null);
+                g.dispose();
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+    }
+
+    /**
+     * Paints the cells changed since the last frame onto the off-screen
+     * image, or every cell if the whole board needs painting
+     */
+    private void paintBoard() {
+        Graphics2D g = board.createGraphics();
+        if (repaintAll) {
+            g.setColor(EMPTY_COLOUR);
+            g.fillRect(0, 0, width * cellSize, height * cellSize);
+            for (int cell = 0; cell < body.length; cell++) {
+                if (body[cell] || level.isBlocked(cell)) paintCell(g, cell);
+            }
+            if (apple >= 0) paintCell(g, apple);
+            repaintAll = false;
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                paintCell(g, dirty[i]);
+            }
+        }
+        clearDirty();
+        g.dispose();
+    }
+
+    /**
+     * Paints a single cell in the colour of what is on it: the apple, then
+     * the snake, then the level
+     * @param g Graphics2D object - graphics of the off-screen image
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void paintCell(Graphics2D g, int cell) {
+        if (cell == apple) {
+            g.setColor(APPLE_COLOUR);
+        } else if (body[cell]) {
+            g.setColor(SNAKE_COLOUR);
+        } else if (level.isWall(cell)) {
+            g.setColor(WALL_COLOUR);
+        } else {
+            g.setColor(level.isTeleporter(cell) ? ROBOT_COLOUR : EMPTY_COLOUR);
+        }
+        g.fillRect((cell % width) * cellSize, (cell / width) * cellSize, cellSize, cellSize);
+    }
+
+    /**
+     * Opens a window with the board and the status of the game, and plays
+     * the game in it until the window is closed
+     * @param args String[] - unused; the board size is set with
+     * -Dsnake.width and -Dsnake.height, or the level with -Dsnake.level
+     */
+    public static void main(String[] args) {
+        StatusPanel status = new StatusPanel();
+        CanvasGame canvas = new CanvasGame(new Snake(), status);
+
+        JFrame window = new JFrame("Snake Game");
+        window.setLayout(new BorderLayout());
+        window.add(canvas, BorderLayout.CENTER);
+        window.add(status, BorderLayout.EAST);
+        window.pack();
+        window.setLocationRelativeTo(null);
+        window.setVisible(true);
+
+        // Buffers can only be created once the canvas is displayed
+        canvas.createBufferStrategy(2);
+        canvas.requestFocus();
+
+        Thread thread = new Thread(canvas, "snake-game");
+        window.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                canvas.stop();
+            }
+        });
+        thread.start();
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class for representing a set of cells in the maze, stored as packed cell
+ * indices. Cells are kept densely in an array alongside an index of where
+ * each cell sits in that array, so adding, removing and picking a uniformly
+ * random member are all constant-time operations. Removal swaps the last
+ * member into the slot of the removed one. Cells can be excluded from the
+ * set until it is next filled (e.g. the walls of a level), so that adding
+ * them does nothing, without the caller checking.
+ * Private int[] members - dense array of the cells in the set
+ * Private int[] positions - position of each cell in members (-1 if absent,
+ * EXCLUDED if excluded)
+ * Private int size - number of cells in the set
+ */
+public class CellSet {
+
+    private static final int EXCLUDED = -2;
+
+    private int members[];
+    private int positions[];
+    private int size;
+
+    /**
+     * Sole Constructor - Initialises an empty set able to hold every cell of
+     * a board with the given number of cells
+     * @param cells int - number of cells on the board
+     */
+    public CellSet(int cells) {
+        members = new int[cells];
+        positions = new int[cells];
+        Arrays.fill(positions, -1);
+        size = 0;
+    }
+
+    /**
+     * Accessor for private class variable size
+     * @return int - number of cells in the set
+     */
+    public int size() { return size; }
+
+    /**
+     * Checks whether the given cell is a member of the set
+     * @param cell int - packed cell index
+     * @return boolean - true if cell is in the set, else false
+     */
+    public boolean contains(int cell) { return positions[cell] >= 0; }
+
+    /**
+     * Adds the given cell to the set, if it is not already a member and has
+     * not been excluded
+     * @param cell int - packed cell index
+     */
+    public void add(int cell) {
+        if (positions[cell] == -1) {
+            members[size] = cell;
+            positions[cell] = size;
+            size++;
+        }
+    }
+
+    /**
+     * Removes the given cell from the set, if it is a member, by moving the
+     * last member of the set into its place
+     * @param cell int - packed cell index
+     */
+    public void remove(int cell) {
+        int pos = positions[cell];
+        if (pos >= 0) {
+            size--;
+            int last = members[size];
+            members[pos] = last;
+            positions[last] = pos;
+            positions[cell] = -1;
+        }
+    }
+
+    /**
+     * Removes the given cell from the set, if it is a member, and stops it
+     * being added again until the set is next filled
+     * @param cell int - packed cell index
+     */
+    public void exclude(int cell) {
+        remove(cell);
+        positions[cell] = EXCLUDED;
+    }
+
+    /**
+     * Picks a uniformly random member of the set without removing it
+     * @param random SplittableRandom object - source of randomness
+     * @return int - packed cell index of random member, or -1 if set is empty
+     */
+    public int random(SplittableRandom random) {
+        if (size == 0) return -1;
+        return members[random.nextInt(size)];
+    }
+
+    /**
+     * Removes every cell from the set
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[members[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Fills the set with every cell of the board, including any excluded
+     */
+    public void fill() {
+        for (int cell = 0; cell < members.length; cell++) {
+            members[cell] = cell;
+            positions[cell] = cell;
+        }
+        size = members.length;
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class for reading the frames recorded by a FrameRecorder, from another
+ * process while the game is still being played or after it has finished. The
+ * file is mapped read-only and slots are read where they lie in it. Since the
+ * recorder never waits for readers, a slot can be overwritten as it is being
+ * read once the ring wraps around; isValid() tells whether a slot read was
+ * still intact afterwards.
+ * Frames are found by the tick of the game they show with a binary search 
+ * over the slots still in the ring, as ticks never decrease from slot to 
+ * slot. Keyframes written by the recorder every so often mean a cleared
+ * board to start from is always left in the ring.
+ * Private MappedByteBuffer buffer - the mapped file
+ * Private int width, height - dimensions of the recorded board
+ * Private int slotCount - number of slots in the ring
+ * Private long startTime - time recording started, in milliseconds since 1970
+ */
+public class FrameReader {
+
+    private static final Renderer.Block BLOCKS[] = Renderer.Block.values();
+
+    private MappedByteBuffer buffer;
+    private int width;
+    private int height;
+    private int slotCount;
+    private long startTime;
+
+    /**
+     * Sole Constructor - Maps the given recording and reads its header
+     * @param file Path object - file recorded by a FrameRecorder
+     * @throws IOException if the file cannot be mapped or is not a recording
+     */
+    public FrameReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < FrameRecorder.HEADER_SIZE || buffer.getInt(0) != FrameRecorder.MAGIC) {
+            throw new IOException("Not a snake frame recording");
+        }
+        if (buffer.getInt(4) != FrameRecorder.VERSION || buffer.getInt(16) != FrameRecorder.SLOT_SIZE) {
+            throw new IOException("Unsupported frame recording version " + buffer.getInt(4));
+        }
+        width = buffer.getInt(8);
+        height = buffer.getInt(12);
+        slotCount = buffer.getInt(20);
+        startTime = buffer.getLong(24);
+    }
+
+    /**
+     * Accessor for private class variable width
+     * @return int - number of columns on the recorded board
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Accessor for private class variable height
+     * @return int - number of rows on the recorded board
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Accessor for private class variable startTime
+     * @return long - time recording started, in milliseconds since 1970
+     */
+    public long getStartTime() { return startTime; }
+
+    /**
+     * Accessor for the number of slots written by the recorder so far
+     * @return long - number of slots written; slots below this are complete
+     */
+    public long getPublished() {
+        return (long) FrameRecorder.LONG.getAcquire(buffer, FrameRecorder.PUBLISHED_OFFSET);
+    }
+
+    /**
+     * Finds the oldest slot that is still in the ring
+     * @return long - number of the oldest slot that can be read
+     */
+    public long getOldest() {
+        return Math.max(0, getPublished() - slotCount + 1);
+    }
+
+    /**
+     * Checks that a slot has not been overwritten, after reading from it
+     * @param slot long - number of the slot
+     * @return boolean - true if everything read from the slot was intact
+     */
+    public boolean isValid(long slot) {
+        VarHandle.acquireFence();
+        return slot > getPublished() - slotCount;
+    }
+
+    /**
+     * Accessor for the tick of a slot
+     * @param slot long - number of the slot
+     * @return long - number of updates of the game made before the frame 
+     * that the slot belongs to
+     */
+    public long getTick(long slot) { return buffer.getLong(offset(slot)); }
+
+    /**
+     * Accessor for the flags of a slot
+     * @param slot long - number of the slot
+     * @return int - FrameRecorder.CLEAR and/or FrameRecorder.CONTINUED
+     */
+    public int getFlags(long slot) { return buffer.getShort(offset(slot) + 8); }
+
+    /**
+     * Accessor for the number of blocks in a slot
+     * @param slot long - number of the slot
+     * @return int - number of blocks in the slot
+     */
+    public int getCount(long slot) { return buffer.getShort(offset(slot) + 10); }
+
+    /**
+     * Accessor for the time of a slot
+     * @param slot long - number of the slot
+     * @return int - time of the frame, in milliseconds since the start
+     */
+    public int getTime(long slot) { return buffer.getInt(offset(slot) + 12); }
+
+    /**
+     * Accessor for an indexed block of a slot
+     * @param slot long - number of the slot
+     * @param i int - index of the block
+     * @return int - packed cell in bits 0-27 and Block ordinal in bits 28-31
+     */
+    public int getBlock(long slot, int i) {
+        return buffer.getInt(offset(slot) + FrameRecorder.SLOT_HEADER_SIZE + (i << 2));
+    }
+
+    /**
+     * Finds the first slot of the first frame at or after the given tick
+     * @param tick long - number of updates of the game
+     * @return long - number of the slot, or getPublished() if there is none yet
+     */
+    public long find(long tick) {
+        long low = getOldest(), high = getPublished();
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (getTick(mid) < tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the latest slot at or before the given slot that starts from a
+     * cleared board, from which the game can be shown
+     * @param slot long - number of the slot
+     * @return long - number of the slot with the CLEAR flag, or -1 if there
+     * is none left in the ring
+     */
+    public long findClear(long slot) {
+        long oldest = getOldest();
+        for (long s = Math.min(slot, getPublished() - 1); s >= oldest; s--) {
+            if ((getFlags(s) & FrameRecorder.CLEAR) != 0) return s;
+        }
+        return -1;
+    }
+
+    /**
+     * Draws the blocks of a slot onto the given renderer, ending the frame
+     * if the next slot does not carry it on
+     * @param slot long - number of the slot
+     * @param renderer Renderer object - renderer to draw onto
+     */
+    public void apply(long slot, Renderer renderer) {
+        if ((getFlags(slot) & FrameRecorder.CLEAR) != 0) renderer.clear();
+        for (int i = 0; i < getCount(slot); i++) {
+            int block = getBlock(slot, i);
+            int cell = block & ((1 << 28) - 1);
+            renderer.drawBlock(BLOCKS[block >>> 28], cell % width, cell / width);
+        }
+        if (slot + 1 >= getPublished() || (getFlags(slot + 1) & FrameRecorder.CONTINUED) == 0) {
+            renderer.endFrame(getTick(slot));
+        }
+    }
+
+    /**
+     * Finds where a slot is in the file
+     * @param slot long - number of the slot
+     * @return int - byte offset of the slot
+     */
+    private int offset(long slot) {
+        return FrameRecorder.HEADER_SIZE + (int) (slot % slotCount) * FrameRecorder.SLOT_SIZE;
+    }
+
+    /**
+     * Prints the frames of a recording: from the given tick to the end of
+     * the recording, or, if no frame is given, every new frame as it is
+     * recorded, starting from the latest cleared board
+     * @param args String[] - path of the recording, optionally a tick
+     */
+    public static void main(String[] args) throws IOException {
+        FrameReader reader = new FrameReader(Paths.get(args[0]));
+        boolean tail = args.length < 2;
+        long slot;
+        if (tail) {
+            slot = reader.findClear(reader.getPublished() - 1);
+            if (slot < 0) slot = reader.getPublished();
+        } else {
+            slot = reader.findClear(reader.find(Long.parseLong(args[1])));
+            if (slot < 0) slot = reader.getOldest();
+        }
+        System.out.printf("%dx%d board, recording started %tc%n", reader.getWidth(), reader.getHeight(), reader.getStartTime());
+
+        while (true) {
+            if (slot >= reader.getPublished()) {
+                if (!tail) return;
+                LockSupport.parkNanos(5_000_000L);
+                continue;
+            }
+            long tick = reader.getTick(slot);
+            int flags = reader.getFlags(slot);
+            int count = reader.getCount(slot);
+            int time = reader.getTime(slot);
+            if (!reader.isValid(slot)) {
+                // Fallen too far behind the recorder: skip to the oldest slot
+                System.out.println("... overwritten, skipping ahead");
+                slot = reader.getOldest();
+                continue;
+            }
+            System.out.printf("tick %d +%dms %s%s%d blocks%n", tick, time,
+                ((flags & FrameRecorder.CLEAR) != 0) ? "clear " : "", ((flags & FrameRecorder.CONTINUED) != 0) ? "cont. " : "", count);
+            slot++;
+        }
+    }
+}
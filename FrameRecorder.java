@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class for recording the blocks drawn on each frame of the game into a
+ * memory-mapped ring file, so that another process on the same machine can
+ * watch live games or replay finished ones by reading the file (see
+ * FrameReader). It wraps the renderer that actually displays the game,
+ * passing every call on, so recording costs the game a few writes to memory
+ * per changed block and never waits for readers: once the ring is full the
+ * oldest frames are overwritten. Frames are numbered by the tick (update) of
+ * the game they show rather than by draw call, so several updates drawn in
+ * one poll, or frames drawn from a LogicThread's snapshots, are found by the
+ * update they show. The recorder keeps its own copy of the board, so that
+ * every KEYFRAME_SLOTS slots it can write the whole board again as a
+ * keyframe, and a reader can still find a board to start from once the
+ * cleared board at the start of a long game has been overwritten.
+ *
+ * File format (little-endian, all records fixed width):
+ *   Header, 64 bytes:
+ *     int  magic      - 0x534E4B46 ("SNKF")
+ *     int  version    - 2
+ *     int  width      - number of columns on the board
+ *     int  height     - number of rows on the board
+ *     int  slotSize   - bytes per slot (128)
+ *     int  slotCount  - number of slots in the ring
+ *     long startTime  - time recording started, in milliseconds since 1970
+ *     long published  - number of slots published so far, at the end of
+ *                       each frame with all of its slots; slot n is at byte
+ *                       64 + (n % slotCount) * slotSize and is complete once
+ *                       published > n (written with release ordering last)
+ *     24 bytes reserved
+ *   Slot, 128 bytes:
+ *     long tick       - number of updates of the game made before the frame,
+ *                       never decreasing from slot to slot
+ *     short flags     - CLEAR if the board was cleared before this slot's
+ *                       blocks, CONTINUED if the slot carries on the blocks
+ *                       of the frame in the previous slot
+ *     short count     - number of blocks in the slot (up to 28)
+ *     int  time       - time of the frame, in milliseconds since startTime
+ *     int[28] blocks  - packed cell (y * width + x) in bits 0-27 and the
+ *                       Block ordinal (APPLE, EMPTY, SNAKE, WALL,
+ *                       TELEPORT) in bits 28-31
+ * A frame with no changed blocks writes no slots. A frame starting with
+ * CLEAR (the start of every game, and a keyframe written after the frame at
+ * least every KEYFRAME_SLOTS slots, with the same tick) holds the whole
+ * board, so a reader can seek to one and show the game from there by
+ * applying the frames after it. A keyframe is skipped if the board would
+ * take more than a quarter of the ring.
+ *
+ * Private MappedByteBuffer buffer - the mapped file
+ * Private Renderer delegate - renderer that displays the game, or null
+ * Private int width - number of columns on the board
+ * Private int slotCount - number of slots in the ring
+ * Private long startTime - time recording started, in milliseconds since 1970
+ * Private long published - number of slots published to readers so far
+ * Private long written - number of slots written so far, which are published
+ * together at the end of each frame so readers never see part of a frame
+ * Private long tick - tick of the last frame ended
+ * Private long lastClear - number of the last slot written with CLEAR
+ * Private int keyframeSlots - most slots written between cleared boards
+ * Private byte[] board - Block ordinal shown in each cell, as a reader
+ * applying the recorded frames would show it
+ * Private long[] shown - bitset over the cells of board that are not EMPTY
+ * Private int slotOffset - byte offset of the slot being filled
+ * Private int count - number of blocks in the slot being filled
+ * Private int flags - flags of the slot being filled
+ */
+public class FrameRecorder implements Renderer {
+
+    public static final int MAGIC = 0x534E4B46;
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 64;
+    public static final int SLOT_SIZE = 128;
+    public static final int SLOT_BLOCKS = 28;
+    public static final int PUBLISHED_OFFSET = 32;
+    public static final int SLOT_HEADER_SIZE = 16;
+    public static final int CLEAR = 1;
+    public static final int CONTINUED = 2;
+    // Slots in the ring unless given (about 3 hours at 100 frames a second)
+    public static final int DEFAULT_SLOTS = 1 << 20;
+    // Most slots between cleared boards, unless the ring is too small for it
+    public static final int KEYFRAME_SLOTS = 4096;
+
+    // Published count, read and written with acquire/release ordering
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private MappedByteBuffer buffer;
+    private Renderer delegate;
+    private int width;
+    private int slotCount;
+    private long startTime;
+    private long published;
+    private long written;
+    private long tick;
+    private long lastClear;
+    private int keyframeSlots;
+    private byte board[];
+    private long shown[];
+    private int slotOffset;
+    private int count;
+    private int flags;
+
+    /**
+     * Sole Constructor - Creates (or replaces) the ring file, maps it and
+     * writes its header
+     * @param delegate Renderer object - renderer that displays the game, or
+     * null to only record
+     * @param file Path object - file to record into
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     * @param slotCount int - number of slots in the ring
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public FrameRecorder(Renderer delegate, Path file, int width, int height, int slotCount) throws IOException {
+        if (slotCount < 2 || slotCount > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+            throw new IllegalArgumentException("Unsupported number of slots " + slotCount);
+        }
+        this.delegate = delegate;
+        this.width = width;
+        this.slotCount = slotCount;
+        keyframeSlots = Math.max(1, Math.min(KEYFRAME_SLOTS, slotCount / 4));
+        board = new byte[width * height];
+        Arrays.fill(board, (byte) Block.EMPTY.ordinal());
+        shown = new long[(width * height + 63) >>> 6];
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        startTime = System.currentTimeMillis();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, width);
+        buffer.putInt(12, height);
+        buffer.putInt(16, SLOT_SIZE);
+        buffer.putInt(20, slotCount);
+        buffer.putLong(24, startTime);
+        LONG.setRelease(buffer, PUBLISHED_OFFSET, 0L);
+
+        published = 0;
+        written = 0;
+        tick = 0;
+        lastClear = 0;
+        count = 0;
+        flags = 0;
+        slotOffset = slotOffset(0);
+    }
+
+    /**
+     * Accessor for private class variable tick
+     * @return long - tick of the last frame ended
+     */
+    public long getTick() { return tick; }
+
+    /**
+     * Accessor for private class variable published
+     * @return long - number of slots written so far
+     */
+    public long getPublished() { return published; }
+
+    /**
+     * {@inheritDoc}
+     * Records that the frame starts from a cleared board.
+     */
+    @Override
+    public void clear() {
+        // Anything drawn before the clear in this frame no longer matters
+        count = 0;
+        flags = CLEAR;
+        Arrays.fill(board, (byte) Block.EMPTY.ordinal());
+        Arrays.fill(shown, 0L);
+        if (delegate != null) delegate.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Records the block in the current frame.
+     */
+    @Override
+    public void drawBlock(Block type, int x, int y) {
+        int cell = y * width + x;
+        record(cell, type.ordinal());
+        board[cell] = (byte) type.ordinal();
+        if (type == Block.EMPTY) {
+            shown[cell >>> 6] &= ~(1L << cell);
+        } else {
+            shown[cell >>> 6] |= 1L << cell;
+        }
+        if (delegate != null) delegate.drawBlock(type, x, y);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Writes the last slot of the frame, if anything changed, followed by a
+     * keyframe of the whole board if the last cleared board is 
+     * KEYFRAME_SLOTS slots old.
+     */
+    @Override
+    public void endFrame(long tick) {
+        this.tick = tick;
+        if (count > 0 || flags != 0) writeSlot();
+        flags = 0;
+        if (written - lastClear > keyframeSlots) writeKeyframe();
+        publish();
+        if (delegate != null) delegate.endFrame(tick);
+    }
+
+    /**
+     * Adds a block to the slot being filled, writing the slot first if it is
+     * full and carrying the frame on into the next
+     * @param cell int - packed cell index (y * width + x)
+     * @param ordinal int - ordinal of the Block drawn
+     */
+    private void record(int cell, int ordinal) {
+        if (count == SLOT_BLOCKS) {
+            writeSlot();
+            flags = CONTINUED;
+        }
+        buffer.putInt(slotOffset + SLOT_HEADER_SIZE + (count << 2), cell | (ordinal << 28));
+        count++;
+    }
+
+    /**
+     * Writes the whole board as a frame of its own with the tick of the last
+     * frame, starting from a cleared board, unless it would take up more than
+     * a quarter of the ring
+     */
+    private void writeKeyframe() {
+        int cells = 0;
+        for (long word : shown) {
+            cells += Long.bitCount(word);
+        }
+        if ((long) (cells + SLOT_BLOCKS - 1) / SLOT_BLOCKS > slotCount / 4) {
+            // Try again after another KEYFRAME_SLOTS slots
+            lastClear = written;
+            return;
+        }
+
+        flags = CLEAR;
+        for (int i = 0; i < shown.length; i++) {
+            for (long bits = shown[i]; bits != 0; bits &= bits - 1) {
+                int cell = (i << 6) + Long.numberOfTrailingZeros(bits);
+                record(cell, board[cell]);
+            }
+        }
+        writeSlot();
+        flags = 0;
+    }
+
+    /**
+     * Fills in the header of the slot being filled, apart from its tick, then
+     * starts on the next slot
+     */
+    private void writeSlot() {
+        if ((flags & CLEAR) != 0) lastClear = written;
+        buffer.putShort(slotOffset + 8, (short) flags);
+        buffer.putShort(slotOffset + 10, (short) count);
+        buffer.putInt(slotOffset + 12, (int) (System.currentTimeMillis() - startTime));
+        written++;
+
+        slotOffset = slotOffset(written);
+        count = 0;
+    }
+
+    /**
+     * Gives every slot written since the last frame ended the tick of the
+     * frame (which is only known once it ends), then publishes them to readers
+     */
+    private void publish() {
+        if (written == published) return;
+        for (long slot = published; slot < written; slot++) {
+            buffer.putLong(slotOffset(slot), tick);
+        }
+        published = written;
+        LONG.setRelease(buffer, PUBLISHED_OFFSET, published);
+    }
+
+    /**
+     * Finds where a slot is in the file
+     * @param slot long - number of the slot, counted from 0
+     * @return int - byte offset of the slot
+     */
+    private int slotOffset(long slot) {
+        return HEADER_SIZE + (int) (slot % slotCount) * SLOT_SIZE;
+    }
+}
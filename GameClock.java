@@ -0,0 +1,17 @@
+/**
+ * Interface for the clock that drives the game. The game framework tells the
+ * clock the delay it wants between updates as the Snake speeds up; the clock
+ * may honour it (as the maze-environment does through its poll delay) or 
+ * ignore it to run the game as fast as possible.
+ */
+public interface GameClock {
+
+    /**
+     * Requests a change of the delay between updates of the game. Called 
+     * from the thread updating the game, which may not be the thread the 
+     * clock is driven from.
+     * 
+     * @param delay int - delay between updates, in milliseconds
+     */
+    void updateDelay(int delay);
+}
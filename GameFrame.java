@@ -1,76 +1,346 @@
 import java.awt.event.*;
+import java.nio.file.Paths;
 
 /**
  * Class for representing the framework of the game, interfacing between the 
- * main controller class and and the game logic. 
+ * renderer and clock (the main controller class, or a headless stand-in) and 
+ * the game logic. 
  * Handles backend processing - text formatting; calls to displaying methods in 
- * the main controller to render maze display; as well as handling of keyboard 
- * input. 
- * Private static int delay - the delay between poll calls
- * Private int lenBuffer - buffer for snake length to check if it's changed
+ * the renderer to render the display; as well as handling of keyboard input. 
+ * Keyboard input arrives on the Swing event thread, so it is passed to the 
+ * thread updating the game through a lock-free queue and applied in order at 
+ * the start of each update, one change of direction per update.
+ * Updates are timed by a fixed-timestep scheduler, so the game runs at the
+ * speed given by the length of the snake however often it is polled. The
+ * clock is only told of the delay it should poll at when that changes.
+ * Private static int START_TICK - time between updates at the start of a
+ * game, in microseconds
+ * Private static int TICK_STEP - time taken off the time between updates for
+ * every 4 squares the snake grows, in microseconds
+ * Private static int FINE_TICK - time between updates below which it is
+ * shortened by FINE_STEP rather than TICK_STEP, in microseconds
+ * Private static int FINE_STEP - time taken off the time between updates for
+ * every 4 squares the snake grows once below FINE_TICK, in microseconds
+ * Private static int MIN_TICK - shortest time between updates, in
+ * microseconds (set with -Dsnake.minTick=micros, 10ms by default, 1ms at least)
+ * Private static int MIN_POLL_DELAY - shortest delay requested from the clock,
+ * in milliseconds; shorter ticks are run several to a poll
+ * Static int MAX_CATCH_UP - most updates run for a single poll: enough for
+ * 8 polls' worth of updates at the shortest tick, so a late poll catches up
+ * rather than dropping updates even when several are due every poll
+ * Private int delay - the delay between polls last requested from the clock
+ * Private long ticks - number of updates made, over every game played
+ * Private TickScheduler scheduler - decides when updates are due
  * Private Snake snake - snake object representing game entities and logic
- * Private SnakeController controller - object representing main controller
- * for interfacing between game and maze-environment. 
+ * Private Renderer renderer - object the game is drawn onto
+ * Private GameClock clock - object driving updates of the game, which is told
+ * of changes to the delay
+ * Private Replay replay - recording of the current game
+ * Private InputQueue input - commands from the keyboard waiting to be applied
+ * Private AutopilotBot autopilot - bot steering the snake before each update,
+ * or null when the player is steering (toggled with P, or on from the start
+ * with -Dsnake.autopilot=true)
+ * Private static String REPLAY_DIR - directory that finished games are saved 
+ * to as replays (set with -Dsnake.replays=dir, not saved if unset)
+ * Private static String SCORE_FILE - score log that finished games are 
+ * appended to (set with -Dsnake.scores=file, not recorded if unset)
+ * Private static ScoreLog scoreLog - the score log, opened (and its index
+ * of highest scores rebuilt) by the first GameFrame created and shared by
+ * every game in the JVM; null if unset or it could not be opened
+ * Private ScoreLog.Controller controller - what steers the snake when the
+ * autopilot is not on
+ * Private boolean autopiloted - whether the autopilot has steered in the 
+ * current game
+ * Private long startTime - time the current game started, in milliseconds
  */
 public class GameFrame implements KeyListener {
 
-    private static int delay = 250;
-    private int lenBuffer;
+    private static final String REPLAY_DIR = System.getProperty("snake.replays");
+    private static final String SCORE_FILE = System.getProperty("snake.scores");
+    private static volatile ScoreLog scoreLog;
+    // Commands in the input queue are Direction ordinals, or TOGGLE for space
+    private static final int TOGGLE = Snake.Direction.values().length;
+    private static final int AUTOPILOT = TOGGLE + 1;
+    private static final int RESET = TOGGLE + 2;
+    private static final Snake.Direction DIRECTIONS[] = Snake.Direction.values();
+    private static final int START_TICK = 250_000;
+    private static final int TICK_STEP = 20_000;
+    private static final int FINE_TICK = 10_000;
+    private static final int FINE_STEP = 1_000;
+    private static final int MIN_TICK = Math.max(1_000, Math.min(START_TICK, Integer.getInteger("snake.minTick", 10_000)));
+    private static final int MIN_POLL_DELAY = 10;
+    static final int MAX_CATCH_UP = 8 * ((MIN_POLL_DELAY * 1000 + MIN_TICK - 1) / MIN_TICK);
+
+    private int delay;
+    private long ticks;
+    private TickScheduler scheduler;
     private Snake snake;
-    private SnakeController controller;
+    private Renderer renderer;
+    private GameClock clock;
+    private Replay replay;
+    private InputQueue input;
+    private AutopilotBot autopilot;
+    private ScoreLog.Controller controller;
+    private boolean autopiloted;
+    private long startTime;
+
+    /**
+     * Constructor - Initialises variables renderer, clock, delay, snake 
+     * and scheduler
+     */
+    public GameFrame(Renderer renderer, GameClock clock) {
+        this(renderer, clock, new Snake());
+    }
+
+    /**
+     * Constructor - Initialises variables renderer, clock, delay and scheduler,
+     * playing the given snake game (e.g. one created from a seed)
+     */
+    public GameFrame(Renderer renderer, GameClock clock, Snake snake) {
+        this.renderer = renderer;
+        this.clock = clock;
+        this.snake = snake;
+        // Clock has not been told a delay yet
+        delay = 0;
+        scheduler = new TickScheduler(START_TICK * 1000L, MAX_CATCH_UP);
+        input = new InputQueue(16);
+        controller = ScoreLog.Controller.KEYBOARD;
+        if (Boolean.getBoolean("snake.autopilot")) autopilot = new AutopilotBot();
+        if (SCORE_FILE != null) openScoreLog();
+    }
+
+    /**
+     * Opens the score log if no game has opened it yet, so that reading the
+     * log through happens at startup rather than when a game ends
+     */
+    private static synchronized void openScoreLog() {
+        if (scoreLog != null) return;
+        try {
+            scoreLog = new ScoreLog(Paths.get(SCORE_FILE), 100);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Accessor for private class variable snake
+     * @return Snake object - the game being played
+     */
+    public Snake getSnake() { return snake; }
+
+    /**
+     * Accessor for private class variable ticks
+     * @return long - number of updates made, over every game played
+     */
+    public long getTicks() { return ticks; }
+
+    /**
+     * Accessor for private class variable replay
+     * @return Replay object - recording of the current (or last) game, or 
+     * null if no game has been started
+     */
+    public Replay getReplay() { return replay; }
+
+    /**
+     * Accessor for private class variable autopilot
+     * @return AutopilotBot object - bot steering the snake, or null if the 
+     * player is steering
+     */
+    public AutopilotBot getAutopilot() { return autopilot; }
+
+    /**
+     * Mutator for private class variable controller
+     * @param controller Controller ENUM - what steers the snake when the
+     * autopilot is not on, as recorded in the score log
+     */
+    public void setController(ScoreLog.Controller controller) { this.controller = controller; }
+
+    /**
+     * Time between updates for a snake of the given length: 250ms, less 20ms
+     * for every 4 squares grown past the starting length down to 10ms, then
+     * less 1ms for every 4 squares after that, down to MIN_TICK
+     * @param length int - length of the snake
+     * @return int - time between updates, in microseconds
+     */
+    public static int tickMicros(int length) {
+        int speedUps = Math.max(0, length / 4 - 1);
+        int coarse = (START_TICK - FINE_TICK) / TICK_STEP;
+        if (speedUps <= coarse) return Math.max(MIN_TICK, START_TICK - TICK_STEP * speedUps);
+        // Rounded up, so the last step reaches MIN_TICK when it is not a whole step
+        int fine = Math.min(speedUps - coarse, Math.max(0, (FINE_TICK - MIN_TICK + FINE_STEP - 1) / FINE_STEP));
+        return Math.max(MIN_TICK, FINE_TICK - FINE_STEP * fine);
+    }
+
+    /**
+     * Runs the updates that the scheduler says are due by the given time, 
+     * for a caller (e.g. the maze-environment) that polls the game rather 
+     * than updating it directly
+     * @param now long - current time, from System.nanoTime
+     * @return int - number of updates made
+     */
+    public int advance(long now) {
+        int due = scheduler.due(now);
+        for (int i = 0; i < due; i++) {
+            update();
+        }
+        return due;
+    }
 
     /**
-     * Sole Default Constructor - Initialises variables controller, snake and lenBuffer
+     * Waits until the next update is due or the given time is reached, 
+     * whichever comes first, for a thread driving the game itself rather 
+     * than being polled
+     * @param deadline long - latest time to wait until, from System.nanoTime
      */
-    public GameFrame(SnakeController controller) {
-        this.controller = controller;
-        snake = new Snake();
-        lenBuffer = 0;
+    public void awaitTick(long deadline) {
+        scheduler.awaitTick(deadline);
     }
 
     /**
      * Updates the Snake object such that it makes its move, checks for
-     * collisions with itself and checks for the apple being eaten. Decreases 
-     * delay by 10 between polls every 4 increments in length.
+     * collisions with itself and checks for the apple being eaten. Shortens 
+     * the time between updates as the snake grows. Applies waiting keyboard 
+     * input before the move.
      */
     public void update() {
+        ticks++;
+        applyInput();
+        if (autopilot != null && snake.isAlive()) {
+            snake.setDirection(autopilot.decide(snake));
+            autopiloted = true;
+        }
+
+        // Record the move about to be made, so the game can be replayed
+        boolean playing = snake.isAlive();
+        if (playing && replay != null) replay.record(snake.getDirection());
+
         // Snake is updated (Makes move, Checks for collisions, Checks for Apple Eaten)
         snake.update();
 
-        // Increase speed of Snake (by decreasing delay) when length is changed to a number divisible by 4
-        if((snake.getLength() % 4 == 0) && (delay != 10) && (lenBuffer != snake.getLength())) {
-            delay -= 20;
-            lenBuffer = snake.getLength();
+        // Save the recording and score of the game once it has finished
+        if (playing && snake.isGameOver() && replay != null) {
+            if (REPLAY_DIR != null) {
+                try {
+                    replay.save(REPLAY_DIR);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            if (scoreLog != null) recordScore();
         }
 
-        // Trigger Event so delay is updated in Maze-Environment
-        controller.updateDelay(delay);
+        // Increase speed of Snake (by shortening the tick) as its length grows
+        setTick(tickMicros(snake.getLength()), false);
+    }
+
+    /**
+     * Changes the time between updates, telling the clock of the delay it 
+     * should poll at if that has changed (e.g. in Maze-Environment)
+     * @param micros int - time between updates, in microseconds
+     * @param force boolean - whether to tell the clock even if unchanged
+     */
+    private void setTick(int micros, boolean force) {
+        scheduler.setPeriod(micros * 1000L);
+        int pollDelay = Math.max(MIN_POLL_DELAY, micros / 1000);
+        if (force || pollDelay != delay) {
+            delay = pollDelay;
+            clock.updateDelay(delay);
+        }
+    }
+
+    /**
+     * Queues the score of the game that has just finished to be appended to
+     * the score log by its writer thread, so that the update never waits for
+     * the record to be forced to disk
+     */
+    private void recordScore() {
+        boolean queued = scoreLog.appendLater(snake.getSeed(), snake.getLength() - 6, replay.getTicks(),
+            (int) (System.currentTimeMillis() - startTime), autopiloted ? ScoreLog.Controller.AUTOPILOT : controller);
+        if (!queued) System.err.println("Score log is behind, score not recorded");
     }
 
     /**
      * Updates the Maze state with the Snake and Apple: Draws the Snake and 
      * Apple onto the Maze state by changing the cell type of the squares that 
-     * they comprise of appropriately. 
+     * they comprise of appropriately. Only the cells that have changed since 
+     * the last draw are touched, unless the whole board needs to be redrawn 
+     * along with the walls and teleporters of the level.
+     *
+     * @param full boolean - whether to redraw the whole board regardless
+     * @return boolean - true if anything was drawn, else false
      */
-    public void draw() {
-        // Draw the Snake onto the Maze by iterating over its body
-        for (int i = 0; i < snake.getLength(); i++) {
-            controller.drawBlock(SnakeController.Block.SNAKE, snake.getBody(i));
+    public boolean draw(boolean full) {
+        boolean changed = true;
+
+        int width = snake.getWidth();
+
+        if (full || snake.isRedrawAll()) {
+            // Clear the Maze, draw the level and then the Snake onto it by 
+            // iterating over its body
+            renderer.clear();
+            snake.getLevel().draw(renderer);
+            for (int i = 0; i < snake.getLength(); i++) {
+                int cell = snake.getBodyCell(i);
+                renderer.drawBlock(Renderer.Block.SNAKE, cell % width, cell / width);
+            }
+
+            // Draw the Apple onto the Maze
+            int apple = snake.getAppleCell();
+            if (apple >= 0) renderer.drawBlock(Renderer.Block.APPLE, apple % width, apple / width);
+        } else {
+            // Draw only the cells that the Snake has entered or left, showing
+            // the level again where it has left a teleporter
+            Level level = snake.getLevel();
+            for (int i = 0; i < snake.getChangeCount(); i++) {
+                int cell = snake.getChangeCell(i);
+                renderer.drawBlock(snake.isBodyCell(cell) ? Renderer.Block.SNAKE : level.getBlock(cell),
+                    cell % width, cell / width);
+            }
+
+            // Move the Apple if it has been eaten
+            int apple = snake.getAppleCell();
+            if (snake.isAppleMoved() && apple >= 0) {
+                renderer.drawBlock(Renderer.Block.APPLE, apple % width, apple / width);
+            }
+            changed = snake.getChangeCount() > 0 || snake.isAppleMoved();
         }
 
-        // Draw the Apple onto the Maze
-        controller.drawBlock(SnakeController.Block.APPLE, snake.getApple());
+        snake.clearChanges();
+        renderer.endFrame(ticks);
+        return changed;
+    }
+
+    /**
+     * Applies the commands waiting in the input queue in the order they were 
+     * given, until one changes the direction of the snake. Any further 
+     * commands are left for the following updates, so quick turns are made 
+     * on successive moves instead of being dropped.
+     */
+    private void applyInput() {
+        int command;
+        while ((command = input.poll()) != InputQueue.EMPTY) {
+            if (command == TOGGLE) {
+                toggle();
+            } else if (command == AUTOPILOT) {
+                autopilot = (autopilot == null) ? new AutopilotBot() : null;
+            } else if (command == RESET) {
+                reset();
+            } else if (snake.isAlive() && snake.setDirection(DIRECTIONS[command])) {
+                break;
+            }
+        }
     }
 
     /**
      * Returns String to be displayed in Input Window using a HTML string for
      * variable formatting. Includes title, instructions and current score.
-     * Will appropriately include game over statement when Snake is dead. 
+     * Will appropriately include game over statement when Snake is dead, or
+     * win statement when Snake has filled the board. 
      */
     public String getText() {
         return "<html><center><span style='font-size: 20px;'>Snake Game</span><br>" + 
         "<br>Use WASD on this window to<br>control the snake.<br><br>" + 
-        ((snake.isGameOver()) ? "GAME OVER!<br><br>" : "") + 
+        ((snake.isWon()) ? "YOU WIN!<br><br>" : (snake.isGameOver()) ? "GAME OVER!<br><br>" : "") + 
         "Press space to " +  (snake.isAlive() ? "stop" : "start") + 
         ".<br><br>Score: " + (snake.getLength()-6) + "<br><br>" + 
         "Eat Green Squares and gain Points.<br>Blue Square randomly teleports Snake.</center></html>";
@@ -78,38 +348,59 @@ public class GameFrame implements KeyListener {
 
     /**
      * {@inheritDoc}
-     * Pipes the Direction ENUM corresponding to the key inputs (WASD) to the 
-     * snake object to handle processing. Toggles Start/Stop Snake game when 
-     * space is pressed. 
+     * Queues the Direction ENUM corresponding to the key inputs (WASD) for 
+     * the snake object to handle on the next update. Queues a toggle of 
+     * Start/Stop Snake game when space is pressed, and of the autopilot when
+     * P is pressed. Runs on the Swing event 
+     * thread, so it never touches the snake object directly.
      * @param e keyEvent object - Contains details on key that was pressed
      */
     @Override
     public void keyPressed(KeyEvent e) {
         switch(e.getKeyCode()) {
-            // Pipe appropriate Direction ENUM to snake object when WASD pressed
+            // Queue appropriate Direction ENUM for snake object when WASD pressed
             case KeyEvent.VK_W:
-                snake.setDirection(Snake.Direction.NORTH);
+                input.offer(Snake.Direction.NORTH.ordinal());
                 break;
             case KeyEvent.VK_A:
-                snake.setDirection(Snake.Direction.WEST);
+                input.offer(Snake.Direction.WEST.ordinal());
                 break;
             case KeyEvent.VK_D:
-                snake.setDirection(Snake.Direction.EAST);
+                input.offer(Snake.Direction.EAST.ordinal());
                 break;
             case KeyEvent.VK_S:
-                snake.setDirection(Snake.Direction.SOUTH);
+                input.offer(Snake.Direction.SOUTH.ordinal());
                 break;
             case KeyEvent.VK_SPACE:
-                // Start or Stop Snake game depending on current state of game
-                if (snake.isAlive()) {
-                    snake.reset();
-                } else {
-                    reset();
-                    snake.setAlive();
-                }
+                input.offer(TOGGLE);
+                break;
+            case KeyEvent.VK_P:
+                input.offer(AUTOPILOT);
         }
     }
 
+    /**
+     * Start or Stop Snake game depending on current state of game
+     */
+    public void toggle() {
+        if (snake.isAlive()) {
+            snake.reset();
+        } else {
+            start();
+        }
+    }
+
+    /**
+     * Starts a new Snake game, recording it so it can be replayed
+     */
+    public void start() {
+        reset();
+        snake.setAlive();
+        replay = new Replay(snake.getLevel(), snake.getSeed());
+        autopiloted = autopilot != null;
+        startTime = System.currentTimeMillis();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -123,12 +414,23 @@ public class GameFrame implements KeyListener {
     public void keyTyped(KeyEvent e) {}
 
     /**
-     * Resets Snake object and Snake speed to initial values at start of a game
+     * Asks for the game to be reset on the next update, for a thread other 
+     * than the one updating the game (e.g. the maze-environment UI, while the
+     * game is polled or a LogicThread runs it)
+     */
+    public void requestReset() {
+        input.offer(RESET);
+    }
+
+    /**
+     * Resets Snake object and Snake speed to initial values at start of a game,
+     * always telling the clock of the starting delay in case it was changed
+     * elsewhere
      */
     public void reset() {
         snake.reset();
-        delay = 250;
-        controller.updateDelay(delay);
+        scheduler.restart();
+        setTick(START_TICK, true);
     }
     
 }
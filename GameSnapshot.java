@@ -0,0 +1,154 @@
+/**
+ * Class for a copy of everything needed to display the game at one moment,
+ * taken by the thread updating the game and handed to the thread displaying
+ * it through a SnapshotBuffer. Snapshots are allocated once and filled in
+ * again for every update, so taking one costs a copy of the bitset of cells
+ * covered by the snake (e.g. 15 words on a 30x30 board) and never allocates.
+ * A snapshot is drawn by comparing it with the snapshot drawn before it, so
+ * only the cells that differ are drawn, however many updates apart they are.
+ * Private int width - number of columns on the board
+ * Private Level level - level of the game the snapshot was taken of, or null
+ * if nothing has been taken into it yet
+ * Private long[] occupied - bitset over the cells covered by the snake
+ * Private int apple - packed cell index of the apple, or -1 if there is none
+ * Private long status - status of the game, packed by StatusPanel.pack()
+ * Private long tick - number of the update the snapshot was taken after, or
+ * -1 if nothing has been taken into it yet
+ */
+public class GameSnapshot {
+
+    private int width;
+    private Level level;
+    private long occupied[];
+    private int apple;
+    private long status;
+    private long tick;
+
+    /**
+     * Sole Constructor - Allocates an empty snapshot of a board of the given size
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     */
+    public GameSnapshot(int width, int height) {
+        this.width = width;
+        occupied = new long[(width * height + 63) >>> 6];
+        apple = -1;
+        tick = -1;
+    }
+
+    /**
+     * Accessor for private class variable status
+     * @return long - status of the game, packed by StatusPanel.pack()
+     */
+    public long getStatus() { return status; }
+
+    /**
+     * Accessor for private class variable tick
+     * @return long - number of the update the snapshot was taken after, or
+     * -1 if it is empty
+     */
+    public long getTick() { return tick; }
+
+    /**
+     * Accessor for private class variable apple
+     * @return int - packed cell index of the apple, or -1 if there is none
+     */
+    public int getApple() { return apple; }
+
+    /**
+     * Checks whether the given cell was covered by the snake
+     * @param cell int - packed cell index (y * width + x)
+     * @return boolean - true if the cell was covered by the snake, else false
+     */
+    public boolean isBody(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Fills the snapshot with the current state of the given game
+     * @param snake Snake object - game to take the snapshot of, on a board of
+     * the same size
+     * @param tick long - number of the update just made
+     */
+    public void capture(Snake snake, long tick) {
+        snake.copyOccupied(occupied);
+        level = snake.getLevel();
+        apple = snake.getAppleCell();
+        status = StatusPanel.pack(snake);
+        this.tick = tick;
+    }
+
+    /**
+     * Makes this snapshot a copy of the given one, e.g. to remember what has
+     * been drawn
+     * @param other GameSnapshot object - snapshot of a board of the same size
+     */
+    public void copyFrom(GameSnapshot other) {
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        level = other.level;
+        apple = other.apple;
+        status = other.status;
+        tick = other.tick;
+    }
+
+    /**
+     * Draws the snapshot onto the given renderer: only the cells that differ
+     * from the snapshot drawn before it, or the whole board if nothing has
+     * been drawn before it. Nothing is drawn if this snapshot is empty.
+     * @param shown GameSnapshot object - snapshot drawn last, or null (or an
+     * empty snapshot) to draw the whole board
+     * @param renderer Renderer object - renderer to draw onto
+     * @return boolean - true if anything was drawn, else false
+     */
+    public boolean draw(GameSnapshot shown, Renderer renderer) {
+        if (tick < 0) return false;
+        boolean changed = false;
+
+        if (shown == null || shown.tick < 0) {
+            // Clear the board and draw the level and then the snake onto it
+            renderer.clear();
+            level.draw(renderer);
+            for (int i = 0; i < occupied.length; i++) {
+                for (long bits = occupied[i]; bits != 0; bits &= bits - 1) {
+                    drawCell(renderer, Renderer.Block.SNAKE, (i << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            if (apple >= 0) drawCell(renderer, Renderer.Block.APPLE, apple);
+            changed = true;
+        } else {
+            // Draw only the cells that the snake has entered or left since,
+            // and the apple if it has moved
+            for (int i = 0; i < occupied.length; i++) {
+                long bits = occupied[i] ^ shown.occupied[i];
+                for (; bits != 0; bits &= bits - 1) {
+                    long bit = bits & -bits;
+                    int cell = (i << 6) + Long.numberOfTrailingZeros(bits);
+                    drawCell(renderer, ((occupied[i] & bit) != 0) ? Renderer.Block.SNAKE : level.getBlock(cell), cell);
+                    changed = true;
+                }
+            }
+            if (apple != shown.apple) {
+                // The old apple's cell may be empty in both snapshots (e.g.
+                // after a reset), so the snake's changes do not cover it
+                if (shown.apple >= 0) {
+                    drawCell(renderer, isBody(shown.apple) ? Renderer.Block.SNAKE : level.getBlock(shown.apple), shown.apple);
+                }
+                if (apple >= 0) drawCell(renderer, Renderer.Block.APPLE, apple);
+                changed = true;
+            }
+        }
+
+        renderer.endFrame(tick);
+        return changed;
+    }
+
+    /**
+     * Draws a block at a packed cell
+     * @param renderer Renderer object - renderer to draw onto
+     * @param type Block type denoted by Block ENUM
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void drawCell(Renderer renderer, Renderer.Block type, int cell) {
+        renderer.drawBlock(type, cell % width, cell / width);
+    }
+}
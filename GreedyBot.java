@@ -0,0 +1,22 @@
+/**
+ * Class for a simple automated controller of the Snake, which heads straight
+ * for the apple along the x axis and then the y axis, without looking out 
+ * for its own body. Used as a baseline when evaluating other bots.
+ */
+public class GreedyBot implements SnakeBot {
+
+    /**
+     * {@inheritDoc}
+     * Moves towards the column of the apple, then towards its row.
+     */
+    @Override
+    public Snake.Direction decide(Snake snake) {
+        int width = snake.getWidth();
+        int head = snake.getBodyCell(0);
+        int apple = snake.getAppleCell();
+        if (apple < 0) return snake.getDirection();
+        int headX = head % width, appleX = apple % width;
+        if (appleX != headX) return (appleX > headX) ? Snake.Direction.EAST : Snake.Direction.WEST;
+        return (apple / width > head / width) ? Snake.Direction.SOUTH : Snake.Direction.NORTH;
+    }
+}
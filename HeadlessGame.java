@@ -0,0 +1,126 @@
+/**
+ * Class for running the Snake game without the maze-environment or any
+ * Swing window. It stands in as the Renderer and GameClock of the game
+ * framework, ignoring drawing and the requested delay so the game advances as
+ * fast as the CPU allows, with a SnakeBot choosing the direction before each
+ * update. Used for testing, evaluating bots and profiling the game logic.
+ * Private GameFrame gameFrame - Game Framework object
+ * Private SnakeBot bot - controller choosing the direction of the snake
+ * Private long ticks - number of updates made in the current game
+ * Private int delay - latest delay requested by the game framework
+ */
+public class HeadlessGame implements Renderer, GameClock {
+
+    private GameFrame gameFrame;
+    private SnakeBot bot;
+    private long ticks;
+    private int delay;
+
+    /**
+     * Constructor - Initialises gameFrame with the framework of the game,
+     * drawing onto and clocked by this object, and the bot controlling it
+     * @param bot SnakeBot object - controller choosing the direction of the snake
+     */
+    public HeadlessGame(SnakeBot bot) {
+        this(bot, new Snake());
+    }
+
+    /**
+     * Constructor - Initialises gameFrame with the framework of the game for 
+     * the given snake game, drawing onto and clocked by this object, and the 
+     * bot controlling it
+     * @param bot SnakeBot object - controller choosing the direction of the snake
+     * @param snake Snake object - game to play (e.g. one created from a seed)
+     */
+    public HeadlessGame(SnakeBot bot, Snake snake) {
+        this.bot = bot;
+        gameFrame = new GameFrame(this, this, snake);
+        gameFrame.setController(ScoreLog.Controller.BOT);
+        ticks = 0;
+    }
+
+    /**
+     * Accessor for the snake of the game framework
+     * @return Snake object - the game being played
+     */
+    public Snake getSnake() { return gameFrame.getSnake(); }
+
+    /**
+     * Accessor for the recording of the game framework
+     * @return Replay object - recording of the current (or last) game
+     */
+    public Replay getReplay() { return gameFrame.getReplay(); }
+
+    /**
+     * Accessor for private class variable ticks
+     * @return long - number of updates made in the current game
+     */
+    public long getTicks() { return ticks; }
+
+    /**
+     * Accessor for private class variable delay
+     * @return int - latest delay requested by the game framework
+     */
+    public int getDelay() { return delay; }
+
+    /**
+     * Plays a new game until the snake dies, the board is full or the given
+     * number of updates have been made.
+     * @param maxTicks long - maximum number of updates to make
+     * @return long - number of updates made
+     */
+    public long play(long maxTicks) {
+        Snake snake = gameFrame.getSnake();
+        gameFrame.start();
+        ticks = 0;
+
+        while (snake.isAlive() && ticks < maxTicks) {
+            snake.setDirection(bot.decide(snake));
+            gameFrame.update();
+            gameFrame.draw(false);
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Nothing is displayed when running headless.
+     */
+    @Override
+    public void clear() {}
+
+    /**
+     * {@inheritDoc}
+     * Nothing is displayed when running headless.
+     */
+    @Override
+    public void drawBlock(Block type, int x, int y) {}
+
+    /**
+     * {@inheritDoc}
+     * The delay is recorded but not waited for when running headless.
+     */
+    @Override
+    public void updateDelay(int delay) { this.delay = delay; }
+
+    /**
+     * Plays games with a GreedyBot, for the given number of updates in total, 
+     * and prints the rate of updates.
+     * @param args String[] - optionally the total number of updates to make
+     */
+    public static void main(String[] args) {
+        long total = (args.length > 0) ? Long.parseLong(args[0]) : 10_000_000L;
+        HeadlessGame game = new HeadlessGame(new GreedyBot());
+
+        long start = System.nanoTime();
+        long played = 0;
+        int games = 0;
+        while (played < total) {
+            played += game.play(total - played);
+            games++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d updates over %d games in %.2fs (%.0f updates/s)%n", played, games, seconds, played / seconds);
+    }
+}
@@ -0,0 +1,76 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Class for passing input commands from one thread (the Swing key listener)
+ * to another (the thread updating the game) without locks. It is a bounded
+ * ring buffer for a single producer and a single consumer: each side only
+ * writes its own index, and publishes it with release semantics after
+ * writing or reading a slot, so neither side ever blocks or allocates.
+ * Commands offered while the queue is full are dropped.
+ * Private int[] commands - ring buffer of commands (size is a power of two)
+ * Private int mask - size of commands minus one
+ * Private long head - number of commands taken (written by consumer only)
+ * Private long tail - number of commands offered (written by producer only)
+ */
+public class InputQueue {
+
+    // Returned by poll() when there is no command waiting
+    public static final int EMPTY = -1;
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(InputQueue.class, "head", long.class);
+            TAIL = lookup.findVarHandle(InputQueue.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private int commands[];
+    private int mask;
+    private long head;
+    private long tail;
+
+    /**
+     * Sole Constructor - Initialises an empty queue
+     * @param capacity int - number of commands that can wait in the queue, 
+     * rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        commands = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a command to the back of the queue. Must only be called from the
+     * producer thread.
+     * @param command int - non-negative command to add
+     * @return boolean - true if the command was added, false if queue was full
+     */
+    public boolean offer(int command) {
+        long t = tail;
+        if (t - (long) HEAD.getAcquire(this) == commands.length) return false;
+        commands[(int) t & mask] = command;
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    /**
+     * Takes the command at the front of the queue. Must only be called from 
+     * the consumer thread.
+     * @return int - command taken, or EMPTY if there is none waiting
+     */
+    public int poll() {
+        long h = head;
+        if (h == (long) TAIL.getAcquire(this)) return EMPTY;
+        int command = commands[(int) h & mask];
+        HEAD.setRelease(this, h + 1);
+        return command;
+    }
+}
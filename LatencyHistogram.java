@@ -0,0 +1,126 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Class for recording a distribution of latencies in nanoseconds with a fixed
+ * amount of memory. Values are counted in log-linear buckets: each power of 
+ * two is split into 8 equal sub-buckets, so recorded values are kept to within
+ * 12.5% of their true value. Recording is a handful of arithmetic operations
+ * and never allocates.
+ * Private long[] counts - number of values recorded in each bucket
+ * Private long count - total number of values recorded
+ * Private long total - sum of values recorded
+ * Private long max - largest value recorded
+ */
+public class LatencyHistogram {
+
+    // Sub-buckets per power of two, as a number of bits
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private long counts[];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Sole Default Constructor - Initialises an empty histogram
+     */
+    public LatencyHistogram() {
+        counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    }
+
+    /**
+     * Records a single value into the histogram. Negative values are recorded
+     * as zero.
+     * @param value long - latency in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[bucket(value)]++;
+        count++;
+        total += value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Accessor for private class variable count
+     * @return long - number of values recorded
+     */
+    public long getCount() { return count; }
+
+    /**
+     * Accessor for private class variable max
+     * @return long - largest value recorded
+     */
+    public long getMax() { return max; }
+
+    /**
+     * Returns the mean of the values recorded
+     * @return double - mean value, or 0 if nothing has been recorded
+     */
+    public double getMean() { return count == 0 ? 0 : (double) total / count; }
+
+    /**
+     * Returns the value below which the given fraction of recorded values lie
+     * @param fraction double - fraction between 0 and 1 (e.g. 0.99)
+     * @return long - upper bound of the bucket containing the percentile
+     */
+    public long getPercentile(double fraction) {
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Clears every value recorded so far
+     */
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * Prints a one-line summary of the histogram in microseconds
+     * @param out PrintStream object - stream to print to
+     * @param name String - label for the line
+     */
+    public void print(PrintStream out, String name) {
+        out.printf("%-10s n=%-9d mean=%9.1fus p50=%9.1fus p99=%9.1fus p99.9=%9.1fus max=%9.1fus%n",
+            name, count, getMean() / 1e3, getPercentile(0.5) / 1e3, getPercentile(0.99) / 1e3,
+            getPercentile(0.999) / 1e3, max / 1e3);
+    }
+
+    /**
+     * Finds the bucket that a value is counted in. Values below SUB_BUCKETS 
+     * each get their own bucket, larger values are split by their highest bit
+     * and the SUB_BITS bits below it.
+     * @param value long - non-negative value
+     * @return int - index into counts
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Finds the largest value that is counted in the given bucket
+     * @param index int - index into counts
+     * @return long - largest value in bucket
+     */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int magnitude = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long width = 1L << (magnitude - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (magnitude - SUB_BITS)) + width - 1;
+    }
+}
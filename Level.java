@@ -0,0 +1,626 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for the layout of the board a game is played on: its size, the
+ * walls that kill the snake, the teleporters that move its head, whether
+ * the snake wraps around each pair of edges or dies on them, and the cell it
+ * starts on. A level never changes once loaded, so one level can be shared
+ * by any number of games on any number of threads.
+ * Levels are compiled when loaded into bitboards over the packed cells (one
+ * bit per cell) for the walls and teleporters, and a table of destinations
+ * indexed by the rank of each teleporter among the teleporters before it, so
+ * whether a cell is a wall or a teleporter, and where a teleporter leads, are
+ * each worked out with a couple of array reads however many walls and
+ * teleporters the level has.
+ * The open level, with no walls, wrapping edges and a single teleporter to a
+ * random free cell in the bottom-right corner (the robot), is the board the
+ * game has always been played on.
+ *
+ * Binary format (big-endian):
+ *   int  magic       - 0x534E4B4C ("SNKL")
+ *   byte version     - 1
+ *   byte flags       - WRAP_COLUMNS if moving off the left or right edge
+ *                      wraps around, WRAP_ROWS likewise for the top and bottom
+ *   int  width       - number of columns on the board
+ *   int  height      - number of rows on the board
+ *   int  start       - packed cell (y * width + x) the snake starts on
+ *   int  runs        - number of runs of walls, followed by each run as
+ *                      int first (packed cell) and int length, in order
+ *   int  teleporters - number of teleporters, followed by each as int cell
+ *                      and int destination (packed cell, or RANDOM for a
+ *                      random free cell), in order of cell
+ *
+ * Text format, which levels can also be loaded from and compiled into the
+ * binary format with main(): an optional first line of exactly "wrap both",
+ * "wrap rows", "wrap columns" or "wrap none" (both by default; any other
+ * first line starting "wrap " is rejected, and one without the space is the
+ * first row, e.g. of teleporters w, r, a and p), then one line per
+ * row with one character per cell: '#' a wall, '.' an open cell, 'S' the
+ * start (otherwise the first open cell), '?' a teleporter to a random free
+ * cell, and letters for linked teleporters. A lowercase letter with a
+ * matching uppercase letter is a teleporter to the uppercase cell, which is
+ * an open cell; without one, the lowercase letter must appear exactly twice,
+ * and each teleports to the other.
+ *
+ * Private static int MAX_CELLS - largest number of cells on a board
+ * Private int width, height - dimensions of the board
+ * Private int cells - number of cells on the board (width * height)
+ * Private int flags - WRAP_COLUMNS and/or WRAP_ROWS
+ * Private int start - packed cell the snake starts on
+ * Private long[] walls - bitboard of the walls
+ * Private long[] teleporters - bitboard of the teleporters
+ * Private long[] blocked - bitboard of the walls and teleporters together, so
+ * that the snake's update can check for both with one test
+ * Private int[] ranks - number of teleporters in the words of teleporters
+ * before each word
+ * Private int[] cellsOf - cell of each teleporter, in order of cell
+ * Private int[] destinations - destination of each teleporter, in the same
+ * order
+ * Private int wallCount - number of walls
+ */
+public class Level {
+
+    public static final int MAGIC = 0x534E4B4C;
+    public static final byte VERSION = 1;
+    public static final int WRAP_COLUMNS = 1;
+    public static final int WRAP_ROWS = 2;
+    // Destination of a teleporter to a random free cell
+    public static final int RANDOM = -1;
+    // Largest number of cells on a board (e.g. 8192x8192)
+    private static final int MAX_CELLS = 1 << 26;
+
+    private int width;
+    private int height;
+    private int cells;
+    private int flags;
+    private int start;
+    private long walls[];
+    private long teleporters[];
+    private long blocked[];
+    private int ranks[];
+    private int cellsOf[];
+    private int destinations[];
+    private int wallCount;
+
+    /**
+     * Holder of the level games are played on unless given one, loaded the
+     * first time it is needed
+     */
+    private static class Default {
+        private static final Level LEVEL = loadDefault();
+    }
+
+    /**
+     * Sole Constructor - Compiles a level from its layout, checking that it
+     * can be played
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     * @param flags int - WRAP_COLUMNS and/or WRAP_ROWS
+     * @param start int - packed cell the snake starts on
+     * @param walls long[] - bitboard of the walls (copied)
+     * @param teleporters int[] - packed cell of each teleporter
+     * @param destinations int[] - destination of each teleporter: a packed
+     * cell, or RANDOM for a random free cell
+     * @throws IllegalArgumentException if the board is too small or too big,
+     * or a cell is off the board, or the start or a destination is a wall,
+     * or the start is a teleporter, or two teleporters share a cell
+     */
+    public Level(int width, int height, int flags, int start, long[] walls, int[] teleporters, int[] destinations) {
+        if (width < 2 || height < 2 || (long) width * height > MAX_CELLS) {
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.flags = flags & (WRAP_COLUMNS | WRAP_ROWS);
+        cells = width * height;
+        int words = (cells + 63) >>> 6;
+        if (walls.length != words) throw new IllegalArgumentException("Wall bitboard needs " + words + " words");
+        this.walls = walls.clone();
+        // Bits past the last cell are not cells
+        if ((cells & 63) != 0) this.walls[words - 1] &= (1L << cells) - 1;
+        for (long word : this.walls) {
+            wallCount += Long.bitCount(word);
+        }
+
+        checkCell(start, "Start");
+        if (isWall(start)) throw new IllegalArgumentException("Start " + start + " is a wall");
+        this.start = start;
+
+        // Order the teleporters by cell, so that their ranks index the table
+        if (teleporters.length != destinations.length) throw new IllegalArgumentException("Each teleporter needs a destination");
+        this.teleporters = new long[words];
+        for (int cell : teleporters) {
+            checkCell(cell, "Teleporter");
+            if (isWall(cell)) throw new IllegalArgumentException("Teleporter " + cell + " is a wall");
+            if (isTeleporter(cell)) throw new IllegalArgumentException("Two teleporters on " + cell);
+            this.teleporters[cell >>> 6] |= 1L << cell;
+        }
+        if (isTeleporter(start)) throw new IllegalArgumentException("Start " + start + " is a teleporter");
+        blocked = new long[words];
+        for (int w = 0; w < words; w++) {
+            blocked[w] = this.walls[w] | this.teleporters[w];
+        }
+        ranks = new int[words];
+        for (int w = 1; w < words; w++) {
+            ranks[w] = ranks[w - 1] + Long.bitCount(this.teleporters[w - 1]);
+        }
+        cellsOf = new int[teleporters.length];
+        this.destinations = new int[teleporters.length];
+        for (int t = 0; t < teleporters.length; t++) {
+            int to = destinations[t];
+            if (to != RANDOM) {
+                checkCell(to, "Destination");
+                if (isWall(to)) throw new IllegalArgumentException("Destination " + to + " is a wall");
+            }
+            int rank = rank(teleporters[t]);
+            cellsOf[rank] = teleporters[t];
+            this.destinations[rank] = to;
+        }
+    }
+
+    /**
+     * Creates the open level of the given size: no walls, wrapping edges, the
+     * snake starting in the top-left corner and a teleporter to a random free
+     * cell in the bottom-right corner (the robot)
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     * @return Level object - the open level
+     */
+    public static Level open(int width, int height) {
+        if (width < 2 || height < 2 || (long) width * height > MAX_CELLS) {
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+        }
+        return new Level(width, height, WRAP_COLUMNS | WRAP_ROWS, 0, new long[(width * height + 63) >>> 6],
+            new int[] { width * height - 1 }, new int[] { RANDOM });
+    }
+
+    /**
+     * Finds the level games are played on unless given one: the level in the
+     * file given with -Dsnake.level=file, or else the open level of the size
+     * given with -Dsnake.width and -Dsnake.height
+     * @return Level object - the default level
+     */
+    public static Level getDefault() {
+        return Default.LEVEL;
+    }
+
+    /**
+     * Loads the default level
+     * @return Level object - the default level
+     * @throws IllegalArgumentException if the level file cannot be loaded
+     */
+    private static Level loadDefault() {
+        String file = System.getProperty("snake.level");
+        if (file == null) return open(Snake.DEFAULT_WIDTH, Snake.DEFAULT_HEIGHT);
+        try {
+            return load(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot load level " + file, e);
+        }
+    }
+
+    /**
+     * Accessor for private class variable width
+     * @return int - number of columns on the board
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Accessor for private class variable height
+     * @return int - number of rows on the board
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Accessor for private class variable start
+     * @return int - packed cell the snake starts on
+     */
+    public int getStart() { return start; }
+
+    /**
+     * Accessor for private class variable wallCount
+     * @return int - number of walls
+     */
+    public int getWallCount() { return wallCount; }
+
+    /**
+     * Accessor for the number of teleporters
+     * @return int - number of teleporters
+     */
+    public int getTeleporterCount() { return cellsOf.length; }
+
+    /**
+     * Accessor for indexed element of private class variable cellsOf
+     * @param i int - index of the teleporter, in order of cell
+     * @return int - packed cell of the teleporter
+     */
+    public int getTeleporter(int i) { return cellsOf[i]; }
+
+    /**
+     * Checks whether the level plays like the open level of its size: no 
+     * walls, both pairs of edges wrapping, and only a teleporter to a random
+     * free cell in the bottom-right corner. Where the snake starts is not
+     * considered.
+     * @return boolean - true if the level plays like Level.open(), else false
+     */
+    public boolean isOpen() {
+        return wallCount == 0 && wrapsColumns() && wrapsRows() && cellsOf.length == 1
+            && cellsOf[0] == width * height - 1 && destinations[0] == RANDOM;
+    }
+
+    /**
+     * Checks whether moving off the left or right edge wraps around
+     * @return boolean - true if it wraps, false if the snake dies
+     */
+    public boolean wrapsColumns() { return (flags & WRAP_COLUMNS) != 0; }
+
+    /**
+     * Checks whether moving off the top or bottom edge wraps around
+     * @return boolean - true if it wraps, false if the snake dies
+     */
+    public boolean wrapsRows() { return (flags & WRAP_ROWS) != 0; }
+
+    /**
+     * Checks whether the given cell is a wall
+     * @param cell int - packed cell index (y * width + x)
+     * @return boolean - true if the cell is a wall, else false
+     */
+    public boolean isWall(int cell) {
+        return (walls[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Checks whether the given cell is a teleporter
+     * @param cell int - packed cell index (y * width + x)
+     * @return boolean - true if the cell is a teleporter, else false
+     */
+    public boolean isTeleporter(int cell) {
+        return (teleporters[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Checks whether the given cell can never hold the apple or be
+     * teleported to at random, i.e. it is a wall or a teleporter
+     * @param cell int - packed cell index (y * width + x)
+     * @return boolean - true if the cell is a wall or teleporter, else false
+     */
+    public boolean isBlocked(int cell) {
+        return (blocked[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Finds where a teleporter leads
+     * @param cell int - packed cell index of a teleporter
+     * @return int - packed cell of its destination, or RANDOM if it leads to
+     * a random free cell
+     */
+    public int getDestination(int cell) {
+        return destinations[rank(cell)];
+    }
+
+    /**
+     * Finds the block a cell shows when the snake is not on it
+     * @param cell int - packed cell index (y * width + x)
+     * @return Block ENUM - WALL, TELEPORT or EMPTY
+     */
+    public Renderer.Block getBlock(int cell) {
+        if (isWall(cell)) return Renderer.Block.WALL;
+        return isTeleporter(cell) ? Renderer.Block.TELEPORT : Renderer.Block.EMPTY;
+    }
+
+    /**
+     * Finds the cell next to the given one in the direction with the given
+     * ordinal, wrapping around the edges of the board where the level does
+     * @param cell int - packed cell index (y * width + x)
+     * @param move int - Direction ordinal (NORTH, EAST, SOUTH, WEST)
+     * @return int - packed cell index of the neighbouring cell, or -1 if the
+     * move is off an edge that does not wrap
+     */
+    public int step(int cell, int move) {
+        switch (move) {
+            case 0:
+                if (cell >= width) return cell - width;
+                return wrapsRows() ? cell + cells - width : -1;
+            case 2:
+                if (cell < cells - width) return cell + width;
+                return wrapsRows() ? cell + width - cells : -1;
+            case 3:
+                if (cell % width != 0) return cell - 1;
+                return wrapsColumns() ? cell + width - 1 : -1;
+            default:
+                if (cell % width != width - 1) return cell + 1;
+                return wrapsColumns() ? cell - width + 1 : -1;
+        }
+    }
+
+    /**
+     * Fills the given set with every cell that the apple can be placed on or
+     * teleported to at random, i.e. every cell but the walls and teleporters,
+     * which are excluded so that they are never added back
+     * @param free CellSet object - set over the cells of a board of this size
+     */
+    public void fillFree(CellSet free) {
+        free.fill();
+        for (int w = 0; w < walls.length; w++) {
+            for (long bits = blocked[w]; bits != 0; bits &= bits - 1) {
+                free.exclude((w << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+    }
+
+    /**
+     * Draws every wall and teleporter onto the given renderer, e.g. after
+     * clearing it
+     * @param renderer Renderer object - renderer to draw onto
+     */
+    public void draw(Renderer renderer) {
+        for (int w = 0; w < walls.length; w++) {
+            for (long bits = walls[w]; bits != 0; bits &= bits - 1) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                renderer.drawBlock(Renderer.Block.WALL, cell % width, cell / width);
+            }
+        }
+        for (int cell : cellsOf) {
+            renderer.drawBlock(Renderer.Block.TELEPORT, cell % width, cell / width);
+        }
+    }
+
+    /**
+     * Finds the index of a teleporter in cellsOf and destinations, from the
+     * number of teleporters before it
+     * @param cell int - packed cell index of a teleporter
+     * @return int - rank of the teleporter
+     */
+    private int rank(int cell) {
+        return ranks[cell >>> 6] + Long.bitCount(teleporters[cell >>> 6] & ((1L << cell) - 1));
+    }
+
+    /**
+     * Checks that a cell is on the board
+     * @param cell int - packed cell index
+     * @param what String - what the cell is, for the message
+     * @throws IllegalArgumentException if the cell is off the board
+     */
+    private void checkCell(int cell, String what) {
+        if (cell < 0 || cell >= cells) throw new IllegalArgumentException(what + " " + cell + " is off the board");
+    }
+
+    /**
+     * Writes the level in the binary level format
+     * @param out OutputStream object - stream to write to
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(flags);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(start);
+
+        // Walls as runs of consecutive cells
+        List<int[]> runs = new ArrayList<>();
+        for (int cell = 0; cell < cells; cell++) {
+            if (!isWall(cell)) continue;
+            int first = cell;
+            while (cell + 1 < cells && isWall(cell + 1)) cell++;
+            runs.add(new int[] { first, cell - first + 1 });
+        }
+        data.writeInt(runs.size());
+        for (int[] run : runs) {
+            data.writeInt(run[0]);
+            data.writeInt(run[1]);
+        }
+
+        data.writeInt(cellsOf.length);
+        for (int t = 0; t < cellsOf.length; t++) {
+            data.writeInt(cellsOf[t]);
+            data.writeInt(destinations[t]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a level in the binary level format
+     * @param in InputStream object - stream to read from
+     * @return Level object - the level read
+     * @throws IOException if the stream is not a supported or playable level
+     */
+    public static Level read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) throw new IOException("Not a snake level");
+        byte version = data.readByte();
+        if (version != VERSION) throw new IOException("Unsupported level version " + version);
+
+        int flags = data.readByte();
+        int width = data.readInt();
+        int height = data.readInt();
+        if (width < 2 || height < 2 || (long) width * height > MAX_CELLS) {
+            throw new IOException("Unsupported board size " + width + "x" + height);
+        }
+        int cells = width * height;
+        int start = data.readInt();
+
+        long walls[] = new long[(cells + 63) >>> 6];
+        int runs = data.readInt();
+        if (runs < 0 || runs > cells) throw new IOException("Corrupt level wall count " + runs);
+        for (int r = 0; r < runs; r++) {
+            int first = data.readInt();
+            int length = data.readInt();
+            if (first < 0 || length < 0 || first > cells - length) throw new IOException("Corrupt level wall run " + first + "+" + length);
+            for (int cell = first; cell < first + length; cell++) {
+                walls[cell >>> 6] |= 1L << cell;
+            }
+        }
+
+        int count = data.readInt();
+        if (count < 0 || count > cells) throw new IOException("Corrupt level teleporter count " + count);
+        int teleporters[] = new int[count];
+        int destinations[] = new int[count];
+        for (int t = 0; t < count; t++) {
+            teleporters[t] = data.readInt();
+            destinations[t] = data.readInt();
+        }
+
+        try {
+            return new Level(width, height, flags, start, walls, teleporters, destinations);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unplayable level: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compiles a level from the text level format
+     * @param lines List of String - lines of the text
+     * @return Level object - the level described
+     * @throws IllegalArgumentException if the text is not a playable level
+     */
+    public static Level parse(List<String> lines) {
+        int flags = WRAP_COLUMNS | WRAP_ROWS;
+        int first = 0;
+        // Only an exact option line is taken as one, as a row may start with teleporters w, r, a and p
+        String option = lines.isEmpty() ? "" : lines.get(0);
+        if (option.matches("wrap (both|rows|columns|none)")) {
+            switch (option.substring(5)) {
+                case "rows": flags = WRAP_ROWS; break;
+                case "columns": flags = WRAP_COLUMNS; break;
+                case "none": flags = 0; break;
+                default: break;
+            }
+            first = 1;
+        } else if (option.startsWith("wrap ")) {
+            throw new IllegalArgumentException("Unknown wrap option: " + option);
+        }
+        // Ignore blank lines after the board, e.g. a trailing newline
+        int last = lines.size();
+        while (last > first && lines.get(last - 1).isEmpty()) last--;
+
+        int height = last - first;
+        int width = (height > 0) ? lines.get(first).length() : 0;
+        if (width < 2 || height < 2 || (long) width * height > MAX_CELLS) {
+            throw new IllegalArgumentException("Unsupported board size " + width + "x" + height);
+        }
+        long walls[] = new long[(width * height + 63) >>> 6];
+        int start = -1;
+        List<Integer> teleporters = new ArrayList<>();
+        List<Integer> destinations = new ArrayList<>();
+        // Cells of each lowercase letter, and the cell of each uppercase one
+        List<List<Integer>> sources = new ArrayList<>();
+        int targets[] = new int[26];
+        Arrays.fill(targets, -1);
+        for (int c = 0; c < 26; c++) {
+            sources.add(new ArrayList<>());
+        }
+
+        for (int y = 0; y < height; y++) {
+            String row = lines.get(first + y);
+            if (row.length() != width) throw new IllegalArgumentException("Row " + (y + 1) + " is not " + width + " cells long");
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                char c = row.charAt(x);
+                if (c == '#') {
+                    walls[cell >>> 6] |= 1L << cell;
+                } else if (c == 'S') {
+                    if (start >= 0) throw new IllegalArgumentException("More than one start");
+                    start = cell;
+                } else if (c == '?') {
+                    teleporters.add(cell);
+                    destinations.add(RANDOM);
+                } else if (c >= 'a' && c <= 'z') {
+                    sources.get(c - 'a').add(cell);
+                } else if (c >= 'A' && c <= 'Z') {
+                    if (targets[c - 'A'] >= 0) throw new IllegalArgumentException("More than one " + c);
+                    targets[c - 'A'] = cell;
+                } else if (c != '.' && c != ' ') {
+                    throw new IllegalArgumentException("Unknown cell '" + c + "' in row " + (y + 1));
+                }
+            }
+        }
+
+        for (int c = 0; c < 26; c++) {
+            List<Integer> from = sources.get(c);
+            if (targets[c] >= 0) {
+                if (from.isEmpty()) throw new IllegalArgumentException("No teleporter to " + (char) ('A' + c));
+                for (int cell : from) {
+                    teleporters.add(cell);
+                    destinations.add(targets[c]);
+                }
+            } else if (!from.isEmpty()) {
+                if (from.size() != 2) throw new IllegalArgumentException("Linked teleporter " + (char) ('a' + c) + " needs a pair");
+                teleporters.add(from.get(0));
+                destinations.add(from.get(1));
+                teleporters.add(from.get(1));
+                destinations.add(from.get(0));
+            }
+        }
+
+        if (start < 0) {
+            // Start on the first cell that is neither a wall nor a teleporter
+            for (int cell = 0; cell < width * height && start < 0; cell++) {
+                if ((walls[cell >>> 6] & (1L << cell)) == 0 && !teleporters.contains(cell)) start = cell;
+            }
+            if (start < 0) throw new IllegalArgumentException("No cell to start on");
+        }
+        return new Level(width, height, flags, start, walls,
+            teleporters.stream().mapToInt(Integer::intValue).toArray(),
+            destinations.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Loads a level from a file in either the binary or the text level format
+     * @param file String - path of the level file
+     * @return Level object - the level loaded
+     * @throws IOException if the file cannot be read or is not a playable level
+     */
+    public static Level load(String file) throws IOException {
+        byte bytes[] = Files.readAllBytes(Paths.get(file));
+        if (bytes.length >= 4 && (((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF)) == MAGIC) {
+            return read(new ByteArrayInputStream(bytes));
+        }
+        try {
+            return parse(Arrays.asList(new String(bytes, StandardCharsets.UTF_8).split("\r?\n", -1)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a level and prints what is in it, then writes it in the binary
+     * level format if a file to write to is given, e.g. to compile a level
+     * written in the text format
+     * @param args String[] - path of a level file, optionally followed by the
+     * path of the binary level file to write
+     */
+    public static void main(String[] args) throws IOException {
+        Level level = load(args[0]);
+        System.out.printf("%s: %dx%d, %s, start (%d,%d), %d walls, %d teleporters%n", args[0],
+            level.width, level.height,
+            (level.flags == (WRAP_COLUMNS | WRAP_ROWS)) ? "wraps" : level.wrapsRows() ? "wraps rows" : level.wrapsColumns() ? "wraps columns" : "no wrap",
+            level.start % level.width, level.start / level.width, level.wallCount, level.cellsOf.length);
+        for (int t = 0; t < level.cellsOf.length; t++) {
+            int cell = level.cellsOf[t];
+            int to = level.destinations[t];
+            System.out.printf("  teleporter (%d,%d) -> %s%n", cell % level.width, cell / level.width,
+                (to == RANDOM) ? "random free cell" : "(" + (to % level.width) + "," + (to / level.width) + ")");
+        }
+        if (args.length > 1) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+                level.write(out);
+            }
+            System.out.printf("wrote %s (%d bytes)%n", args[1], Files.size(Paths.get(args[1])));
+        }
+    }
+}
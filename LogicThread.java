@@ -0,0 +1,57 @@
+/**
+ * Class for running the updates of the game on a thread of its own, so that
+ * they keep to the game's schedule however long the display takes. After
+ * every update the thread takes a snapshot of the game into a SnapshotBuffer,
+ * from which the thread displaying the game draws the latest one whenever it
+ * is ready. Only this thread touches the Snake object once it has started;
+ * input reaches it through the game framework's input queue.
+ * Private GameFrame gameFrame - Game Framework object
+ * Private SnapshotBuffer snapshots - buffer the snapshots are published to
+ * Private volatile boolean running - whether the thread should carry on
+ */
+public class LogicThread extends Thread {
+
+    private GameFrame gameFrame;
+    private SnapshotBuffer snapshots;
+    private volatile boolean running;
+
+    /**
+     * Sole Constructor - Creates a daemon thread that will run the updates of
+     * the given game and publish snapshots of it, once started
+     * @param gameFrame GameFrame object - framework of the game to run
+     * @param snapshots SnapshotBuffer object - buffer to publish snapshots to
+     */
+    public LogicThread(GameFrame gameFrame, SnapshotBuffer snapshots) {
+        super("snake-logic");
+        this.gameFrame = gameFrame;
+        this.snapshots = snapshots;
+        running = true;
+        setDaemon(true);
+    }
+
+    /**
+     * Runs the updates that have fallen due, publishes a snapshot if any
+     * were made, then waits for the next update to fall due, until stopped
+     */
+    @Override
+    public void run() {
+        Snake snake = gameFrame.getSnake();
+        while (running) {
+            int made = gameFrame.advance(System.nanoTime());
+            if (made > 0) {
+                snapshots.getBack().capture(snake, gameFrame.getTicks());
+                snapshots.publish();
+                // Changes are drawn from snapshots, so the snake need not keep them
+                snake.clearChanges();
+            }
+            gameFrame.awaitTick(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Asks the thread to finish, once the next update has fallen due
+     */
+    public void finish() {
+        running = false;
+    }
+}
@@ -0,0 +1,199 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import sun.misc.Unsafe;
+import java.awt.Point;
+import java.awt.Color;
+
+import uk.ac.warwick.dcs.maze.logic.*;
+import uk.ac.warwick.dcs.maze.gui.MazeGridPanel;
+
+/**
+ * Class for accessing the private members of the maze-environment that the
+ * game needs to modify. Every member is resolved once, when the class is
+ * loaded (or when the bridge is attached to a robot), into a VarHandle or an
+ * Unsafe offset held in a final field, so the per-poll writes are plain field
+ * writes rather than reflective lookups. If the maze-environment jar does not
+ * have the expected layout, the problem is reported once through
+ * checkLayout() instead of on every poll.
+ * Private static VarHandle GRID - handle for Maze.grid
+ * Private static VarHandle START - handle for Maze.start
+ * Private static VarHandle FINISH - handle for Maze.finish
+ * Private static Unsafe UNSAFE - Unsafe instance for static final writes
+ * Private static Object COLOUR_BASE - base of static fields in MazeGridPanel
+ * Private static long BEEN_OFFSET, WALL_OFFSET, PASSAGE_OFFSET - offsets of
+ * the static colour fields in MazeGridPanel
+ * Private static String LAYOUT_ERROR - description of mismatched layout (null if none)
+ * Private Maze maze - Maze object retrieved from the robot
+ * Private IRobot robot - robot the bridge is attached to
+ * Private VarHandle active - handle for the active field of the robot
+ */
+public class MazeBridge {
+
+    private static final VarHandle GRID;
+    private static final VarHandle START;
+    private static final VarHandle FINISH;
+    private static final Unsafe UNSAFE;
+    private static final Object COLOUR_BASE;
+    private static final long BEEN_OFFSET;
+    private static final long WALL_OFFSET;
+    private static final long PASSAGE_OFFSET;
+    private static final String LAYOUT_ERROR;
+
+    static {
+        VarHandle grid = null, start = null, finish = null;
+        Unsafe unsafe = null;
+        Object colourBase = null;
+        long been = 0, wall = 0, passage = 0;
+        String error = null;
+
+        try {
+            // Resolve the fields of Maze that describe its layout and target
+            grid = findField(Maze.class, "grid", int[][].class);
+            start = findField(Maze.class, "start", Point.class);
+            finish = findField(Maze.class, "finish", Point.class);
+
+            // Resolve Unsafe and the static final colour fields of MazeGridPanel
+            Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            unsafe = (Unsafe) unsafeField.get(null);
+            // Initialise the class first, or its initialiser would overwrite the colours written later
+            Class.forName(MazeGridPanel.class.getName(), true, MazeGridPanel.class.getClassLoader());
+            Field beenField = findColourField("BEENBG");
+            colourBase = unsafe.staticFieldBase(beenField);
+            been = unsafe.staticFieldOffset(beenField);
+            wall = unsafe.staticFieldOffset(findColourField("WALLBG"));
+            passage = unsafe.staticFieldOffset(findColourField("PASSAGEBG"));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            error = "maze-environment layout not supported: " + e.getMessage();
+        }
+
+        GRID = grid;
+        START = start;
+        FINISH = finish;
+        UNSAFE = unsafe;
+        COLOUR_BASE = colourBase;
+        BEEN_OFFSET = been;
+        WALL_OFFSET = wall;
+        PASSAGE_OFFSET = passage;
+        LAYOUT_ERROR = error;
+    }
+
+    private final Maze maze;
+    private final IRobot robot;
+    private final VarHandle active;
+
+    /**
+     * Sole Constructor - Attaches the bridge to the given robot, resolving
+     * the robot's maze and active fields and retrieving its maze.
+     * @param robot IRobot object representing the robot
+     * @throws IllegalStateException if the maze-environment layout is not supported
+     */
+    public MazeBridge(IRobot robot) {
+        checkLayout();
+        try {
+            this.robot = robot;
+            this.maze = (Maze) findField(robot.getClass(), "maze", Maze.class).get(robot);
+            this.active = findField(robot.getClass(), "active", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("maze-environment layout not supported: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks that every member of the maze-environment required by the game
+     * was resolved when the class was loaded.
+     * @throws IllegalStateException if the maze-environment layout is not supported
+     */
+    public static void checkLayout() {
+        if (LAYOUT_ERROR != null) throw new IllegalStateException(LAYOUT_ERROR);
+    }
+
+    /**
+     * Accessor for private class variable maze
+     * @return Maze object - maze that the robot is in
+     */
+    public Maze getMaze() { return maze; }
+
+    /**
+     * Replaces the grid of the maze, changing its size
+     * @param grid int[][] - new grid of cell types, indexed by [x][y]
+     */
+    public void setGrid(int[][] grid) { GRID.set(maze, grid); }
+
+    /**
+     * Moves the start of the maze (i.e. where the robot is placed)
+     * @param position Point object - new location of the start
+     */
+    public void setStart(Point position) { START.set(maze, position); }
+
+    /**
+     * Moves the target of the maze
+     * @param position Point object - new location of the target
+     */
+    public void setFinish(Point position) { FINISH.set(maze, position); }
+
+    /**
+     * Deactivates the movement of the robot
+     */
+    public void deactivateRobot() { active.set(robot, false); }
+
+    /**
+     * Changes the background colour of squares that have been visited before
+     * @param colour Color object - colour to change the square background to
+     */
+    public static void setBeenBeforeColour(Color colour) { setColour(BEEN_OFFSET, colour); }
+
+    /**
+     * Changes the background colour of wall squares
+     * @param colour Color object - colour to change the square background to
+     */
+    public static void setWallColour(Color colour) { setColour(WALL_OFFSET, colour); }
+
+    /**
+     * Changes the background colour of passage squares
+     * @param colour Color object - colour to change the square background to
+     */
+    public static void setPassageColour(Color colour) { setColour(PASSAGE_OFFSET, colour); }
+
+    /**
+     * Changes the value of a static final colour field in the MazeGridPanel
+     * class by writing to its resolved offset through the Unsafe class.
+     * @param offset long - offset of the static field to be changed
+     * @param colour Color object - colour to change the square background to
+     */
+    private static void setColour(long offset, Color colour) {
+        checkLayout();
+        UNSAFE.putObject(COLOUR_BASE, offset, colour);
+    }
+
+    /**
+     * Resolves a private field of the given class into a VarHandle, checking
+     * that it can hold values of the expected type.
+     * @param owner Class object - class declaring the field
+     * @param name String - name of the field
+     * @param type Class object - type of value that will be stored in the field
+     * @return VarHandle object - handle for reading and writing the field
+     */
+    private static VarHandle findField(Class<?> owner, String name, Class<?> type) throws ReflectiveOperationException {
+        Field field = owner.getDeclaredField(name);
+        if (!field.getType().isAssignableFrom(type)) {
+            throw new NoSuchFieldException(owner.getName() + "." + name + " has type "
+                + field.getType().getName() + ", expected " + type.getName());
+        }
+        return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflectVarHandle(field);
+    }
+
+    /**
+     * Finds a static colour field declared in the MazeGridPanel class
+     * @param name String - name of the field
+     * @return Field object - the colour field
+     */
+    private static Field findColourField(String name) throws NoSuchFieldException {
+        Field field = MazeGridPanel.class.getDeclaredField(name);
+        if (field.getType() != Color.class) {
+            throw new NoSuchFieldException(MazeGridPanel.class.getName() + "." + name + " is not a Color");
+        }
+        return field;
+    }
+}
@@ -0,0 +1,52 @@
+import java.awt.Point;
+
+/**
+ * Interface for displaying the state of the game. The game framework draws
+ * the Snake and Apple, and the walls and teleporters of the level, through 
+ * these methods, so the game can be shown on the maze-environment by the 
+ * SnakeController or not shown at all when running headless. Positions are given as primitive coordinates so that drawing a 
+ * frame does not create any objects.
+ * enum Block - types of blocks required for the game
+ */
+public interface Renderer {
+
+    /**
+     * Types of Blocks that are considered for the rendering of the game
+     */
+    enum Block {
+        APPLE, EMPTY, SNAKE, WALL, TELEPORT
+    }
+
+    /**
+     * Clears the entire display by replacing every block with an EMPTY block
+     */
+    void clear();
+
+    /**
+     * Changes the block shown at the given position
+     * 
+     * @param type Block type denoted by Block ENUM
+     * @param x int - column of square to modify
+     * @param y int - row of square to modify
+     */
+    void drawBlock(Block type, int x, int y);
+
+    /**
+     * Changes the block shown at the given position
+     * 
+     * @param type Block type denoted by Block ENUM
+     * @param position Point object representing location of square to modify
+     */
+    default void drawBlock(Block type, Point position) {
+        drawBlock(type, position.x, position.y);
+    }
+
+    /**
+     * Marks the end of a frame, once every block changed by a draw has been
+     * given. Does nothing unless the renderer needs to know (e.g. to record
+     * frames).
+     * @param tick long - number of updates of the game made before the 
+     * frame, which never decreases from one frame to the next
+     */
+    default void endFrame(long tick) {}
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Class for recording a game compactly so that it can be played again
+ * exactly. Since apple and teleport locations are determined by the seed of
+ * the game, only the level, the seed and the direction the snake moved in 
+ * on each update need to be kept. Directions are packed 2 bits each, 4 
+ * updates to a byte.
+ *
+ * Binary format (big-endian):
+ *   int  magic   - 0x534E4B52 ("SNKR")
+ *   byte version - 3
+ *   level        - the level, in the binary level format (see Level)
+ *   long seed    - seed of the game, as given to Snake.reset(long)
+ *   int  ticks   - number of updates recorded
+ *   byte[(ticks + 3) / 4] moves - Direction ordinal of update t in bits
+ *                  2*(t%4) to 2*(t%4)+1 of byte t/4
+ *
+ * Private Level level - level of the recorded game
+ * Private long seed - seed of the recorded game
+ * Private int ticks - number of updates recorded
+ * Private byte[] moves - packed directions of each update
+ */
+public class Replay {
+
+    private static final int MAGIC = 0x534E4B52;
+    private static final byte VERSION = 3;
+    private static final Snake.Direction DIRECTIONS[] = Snake.Direction.values();
+
+    private Level level;
+    private long seed;
+    private int ticks;
+    private byte moves[];
+
+    /**
+     * Sole Constructor - Initialises an empty recording of the game with the
+     * given level and seed
+     * @param level Level object - level of the game being recorded
+     * @param seed long - seed of the game being recorded
+     */
+    public Replay(Level level, long seed) {
+        this.level = level;
+        this.seed = seed;
+        ticks = 0;
+        moves = new byte[256];
+    }
+
+    /**
+     * Accessor for private class variable level
+     * @return Level object - level of the recorded game
+     */
+    public Level getLevel() { return level; }
+
+    /**
+     * Accessor for private class variable seed
+     * @return long - seed of the recorded game
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Accessor for private class variable ticks
+     * @return int - number of updates recorded
+     */
+    public int getTicks() { return ticks; }
+
+    /**
+     * Accessor for the direction moved in on an indexed update
+     * @param tick int - index of update
+     * @return Direction ENUM - direction the snake moved in on that update
+     */
+    public Snake.Direction getMove(int tick) {
+        return DIRECTIONS[(moves[tick >>> 2] >>> ((tick & 3) << 1)) & 3];
+    }
+
+    /**
+     * Records the direction that the snake is about to move in on the next
+     * update. Only allocates when the recording outgrows its buffer.
+     * @param direction Direction ENUM - direction of the next move
+     */
+    public void record(Snake.Direction direction) {
+        int index = ticks >>> 2;
+        if (index == moves.length) moves = Arrays.copyOf(moves, moves.length * 2);
+        moves[index] |= direction.ordinal() << ((ticks & 3) << 1);
+        ticks++;
+    }
+
+    /**
+     * Plays the recorded game again from its seed and moves, without
+     * displaying it, as fast as possible.
+     * @return Snake object - game in its state after the last recorded update
+     */
+    public Snake play() {
+        Snake snake = new Snake(level, seed);
+        snake.reset(seed);
+        snake.setAlive();
+        for (int t = 0; t < ticks; t++) {
+            snake.setDirection(getMove(t));
+            snake.update();
+            snake.clearChanges();
+        }
+        return snake;
+    }
+
+    /**
+     * Writes the recording in the binary replay format
+     * @param out OutputStream object - stream to write to
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        level.write(data);
+        data.writeLong(seed);
+        data.writeInt(ticks);
+        data.write(moves, 0, (ticks + 3) >>> 2);
+        data.flush();
+    }
+
+    /**
+     * Reads a recording in the binary replay format
+     * @param in InputStream object - stream to read from
+     * @return Replay object - the recording read
+     * @throws IOException if the stream is not a supported replay
+     */
+    public static Replay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) throw new IOException("Not a snake replay");
+        byte version = data.readByte();
+        if (version != VERSION) throw new IOException("Unsupported replay version " + version);
+
+        Replay replay = new Replay(Level.read(data), data.readLong());
+        int ticks = data.readInt();
+        if (ticks < 0) throw new IOException("Corrupt replay length " + ticks);
+        // Read in blocks, so a corrupt length cannot allocate more than the stream holds
+        int length = (ticks + 3) >>> 2;
+        byte packed[] = data.readNBytes(length);
+        if (packed.length != length) throw new IOException("Truncated replay: " + ticks + " updates, " + packed.length + " bytes of moves");
+        replay.moves = Arrays.copyOf(packed, Math.max(256, length));
+        replay.ticks = ticks;
+        return replay;
+    }
+
+    /**
+     * Saves the recording to a file named after its seed in the given directory
+     * @param directory String - directory to save the replay in
+     */
+    public void save(String directory) throws IOException {
+        String file = directory + "/replay-" + Long.toHexString(seed) + ".snkr";
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Plays the replay files given again and prints the outcome of each game
+     * @param args String[] - paths of replay files
+     */
+    public static void main(String[] args) throws IOException {
+        for (String file : args) {
+            Replay replay;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                replay = read(in);
+            }
+            long start = System.nanoTime();
+            Snake snake = replay.play();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %dx%d seed=%x ticks=%d score=%d %s (%.0f updates/s)%n", file, 
+                replay.getLevel().getWidth(), replay.getLevel().getHeight(), replay.getSeed(), replay.getTicks(), snake.getLength() - 6, snake.isWon() ? "won" : snake.isGameOver() ? "game over" : "stopped",
+                replay.getTicks() / seconds);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32C;
+
+/**
+ * Class for keeping the scores of finished games in a file that is only ever
+ * appended to, along with an index of the highest scores kept in memory so
+ * that the leaderboard can be read at any time without touching the file.
+ * The index is rebuilt when the file is opened by reading it through in large
+ * blocks, only creating an entry for records that make the leaderboard.
+ * Each record is forced to disk as it is appended. Games can be handed to
+ * appendLater instead, which queues them for a background writer thread so
+ * that the caller never waits on the disk; queued games are still written
+ * when the log is closed or the JVM shuts down. A record left incomplete
+ * or corrupted by a crash fails its checksum and is ignored, and an
+ * incomplete record at the end of the file is cut off before appending.
+ *
+ * File format (little-endian):
+ *   Header, 16 bytes: int magic 0x534E4B53 ("SNKS"), int version 1,
+ *   int recordSize 40, int reserved
+ *   Record, 40 bytes:
+ *     long endTime    - time the game ended, in milliseconds since 1970
+ *     long seed       - seed of the game
+ *     long ticks      - number of updates made in the game
+ *     int  duration   - length of the game, in milliseconds
+ *     int  score      - score of the game (snake length - 6)
+ *     int  controller - Controller ordinal (KEYBOARD, AUTOPILOT, BOT)
+ *     int  checksum   - CRC32C of the 36 bytes before it
+ *
+ * enum Controller - what steered the snake in a game
+ * Private FileChannel channel - the log file, open for reading and appending
+ * Private ByteBuffer record - buffer a record is built in before appending
+ * Private CRC32C crc - checksum of records
+ * Private Entry[] top - highest scores, highest first
+ * Private int topCount - number of entries in top
+ * Private long count - number of valid records in the log
+ * Private long records - number of whole records in the log, valid or not
+ * Private BlockingQueue<Entry> pending - games queued by appendLater
+ * Private Thread writer - thread appending queued games, started by the first
+ * call to appendLater
+ */
+public class ScoreLog implements Closeable {
+
+    /**
+     * What steered the snake in a game
+     */
+    enum Controller {
+        KEYBOARD, AUTOPILOT, BOT
+    }
+
+    /**
+     * Class for a single recorded game
+     * Private long endTime - time the game ended, in milliseconds since 1970
+     * Private long seed - seed of the game
+     * Private long ticks - number of updates made in the game
+     * Private int duration - length of the game, in milliseconds
+     * Private int score - score of the game
+     * Private Controller controller - what steered the snake
+     */
+    public static class Entry {
+        private long endTime;
+        private long seed;
+        private long ticks;
+        private int duration;
+        private int score;
+        private Controller controller;
+
+        /**
+         * Sole Constructor - Initialises every field of the entry
+         */
+        Entry(long endTime, long seed, long ticks, int duration, int score, Controller controller) {
+            this.endTime = endTime;
+            this.seed = seed;
+            this.ticks = ticks;
+            this.duration = duration;
+            this.score = score;
+            this.controller = controller;
+        }
+
+        /**
+         * Accessor for private class variable endTime
+         * @return long - time the game ended, in milliseconds since 1970
+         */
+        public long getEndTime() { return endTime; }
+
+        /**
+         * Accessor for private class variable seed
+         * @return long - seed of the game
+         */
+        public long getSeed() { return seed; }
+
+        /**
+         * Accessor for private class variable ticks
+         * @return long - number of updates made in the game
+         */
+        public long getTicks() { return ticks; }
+
+        /**
+         * Accessor for private class variable duration
+         * @return int - length of the game, in milliseconds
+         */
+        public int getDuration() { return duration; }
+
+        /**
+         * Accessor for private class variable score
+         * @return int - score of the game
+         */
+        public int getScore() { return score; }
+
+        /**
+         * Accessor for private class variable controller
+         * @return Controller ENUM - what steered the snake
+         */
+        public Controller getController() { return controller; }
+    }
+
+    private static final int MAGIC = 0x534E4B53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 40;
+    // Records read from the file at a time when rebuilding the index
+    private static final int SCAN_RECORDS = 16384;
+    private static final Controller CONTROLLERS[] = Controller.values();
+    // Games appendLater can queue before it drops them
+    private static final int PENDING = 256;
+
+    private FileChannel channel;
+    private ByteBuffer record;
+    private CRC32C crc;
+    private Entry top[];
+    private int topCount;
+    private long count;
+    private long records;
+    private final BlockingQueue<Entry> pending = new ArrayBlockingQueue<>(PENDING);
+    private Thread writer;
+
+    /**
+     * Sole Constructor - Opens (or creates) the log file and rebuilds the
+     * index of highest scores from it
+     * @param file Path object - log file
+     * @param size int - number of highest scores to keep in the index
+     * @throws IOException if the file cannot be opened or is not a score log
+     */
+    public ScoreLog(Path file, int size) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        crc = new CRC32C();
+        top = new Entry[size];
+        topCount = 0;
+        count = 0;
+        records = 0;
+
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+                channel.write(header, 0);
+                channel.force(true);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                if (channel.read(header, 0) != HEADER_SIZE || header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a snake score log: " + file);
+                }
+                if (header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+                    throw new IOException("Unsupported score log version " + header.getInt(4));
+                }
+                scan();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Accessor for private class variable count
+     * @return long - number of games recorded in the log
+     */
+    public synchronized long getCount() { return count; }
+
+    /**
+     * Appends a finished game to the log, forcing it to disk, and adds it to
+     * the index if it makes the leaderboard
+     * @param seed long - seed of the game
+     * @param score int - score of the game
+     * @param ticks long - number of updates made in the game
+     * @param duration int - length of the game, in milliseconds
+     * @param controller Controller ENUM - what steered the snake
+     * @throws IOException if the record cannot be written
+     */
+    public void append(long seed, int score, long ticks, int duration, Controller controller) throws IOException {
+        write(new Entry(System.currentTimeMillis(), seed, ticks, duration, score, controller));
+    }
+
+    /**
+     * Queues a finished game to be appended by the writer thread, so that the
+     * caller does not wait for the record to be forced to disk. The game is
+     * only in the index once it has been written
+     * @param seed long - seed of the game
+     * @param score int - score of the game
+     * @param ticks long - number of updates made in the game
+     * @param duration int - length of the game, in milliseconds
+     * @param controller Controller ENUM - what steered the snake
+     * @return boolean - false if the queue was full and the game was dropped
+     */
+    public boolean appendLater(long seed, int score, long ticks, int duration, Controller controller) {
+        synchronized (pending) {
+            if (writer == null) {
+                writer = new Thread(this::drain, "snake-scores");
+                writer.setDaemon(true);
+                writer.start();
+                // The writer is a daemon, so games still queued at exit are written by the hook
+                Runtime.getRuntime().addShutdownHook(new Thread(this::stopWriter, "snake-scores-flush"));
+            }
+        }
+        return pending.offer(new Entry(System.currentTimeMillis(), seed, ticks, duration, score, controller));
+    }
+
+    /**
+     * Writes a record for a game at the end of the log, forcing it to disk,
+     * and adds the game to the index if it makes the leaderboard
+     * @param entry Entry object - game to write
+     * @throws IOException if the record cannot be written
+     */
+    private synchronized void write(Entry entry) throws IOException {
+        record.clear();
+        record.putLong(0, entry.endTime).putLong(8, entry.seed).putLong(16, entry.ticks).putInt(24, entry.duration)
+            .putInt(28, entry.score).putInt(32, entry.controller.ordinal());
+        record.putInt(36, checksum(record, 0));
+        record.clear();
+
+        // Records are always written at the end of the last whole record
+        long position = HEADER_SIZE + records * RECORD_SIZE;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        channel.force(false);
+        records++;
+        count++;
+
+        if (qualifies(entry.score)) offer(entry);
+    }
+
+    /**
+     * Body of the writer thread: appends queued games as they arrive until
+     * interrupted, then appends whatever is still queued and returns
+     */
+    private void drain() {
+        boolean stopping = false;
+        while (true) {
+            Entry entry;
+            try {
+                entry = stopping ? pending.poll() : pending.take();
+            } catch (InterruptedException e) {
+                stopping = true;
+                continue;
+            }
+            if (entry == null) return;
+            try {
+                write(entry);
+            } catch (IOException e) {
+                System.err.println("Could not record score: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread, if started, once every queued game is written
+     */
+    private void stopWriter() {
+        Thread thread;
+        synchronized (pending) {
+            thread = writer;
+        }
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds the highest scores recorded, highest first; games with equal
+     * scores are ordered by which was played first
+     * @param n int - number of scores wanted
+     * @return Entry[] - up to n highest scores (fewer if fewer were recorded
+     * or the index is smaller)
+     */
+    public synchronized Entry[] getTop(int n) {
+        return Arrays.copyOf(top, Math.min(n, topCount));
+    }
+
+    /**
+     * Writes any games still queued by appendLater and closes the log file
+     */
+    @Override
+    public void close() throws IOException {
+        stopWriter();
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the log through in large blocks, counting valid records and
+     * indexing the highest scores, and cuts off an incomplete last record
+     */
+    private void scan() throws IOException {
+        ByteBuffer block = ByteBuffer.allocateDirect(SCAN_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long whole = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        long position = HEADER_SIZE;
+
+        for (long read = 0; read < whole; ) {
+            block.clear();
+            block.limit((int) Math.min(block.capacity(), (whole - read) * RECORD_SIZE));
+            while (block.hasRemaining()) {
+                if (channel.read(block, position + block.position()) < 0) break;
+            }
+            int inBlock = block.position() / RECORD_SIZE;
+            for (int i = 0; i < inBlock; i++) {
+                int offset = i * RECORD_SIZE;
+                if (block.getInt(offset + 36) != checksum(block, offset)) continue;
+                count++;
+                int score = block.getInt(offset + 28);
+                if (qualifies(score)) {
+                    int controller = block.getInt(offset + 32);
+                    offer(new Entry(block.getLong(offset), block.getLong(offset + 8), block.getLong(offset + 16),
+                        block.getInt(offset + 24), score, CONTROLLERS[Math.min(Math.max(controller, 0), CONTROLLERS.length - 1)]));
+                }
+            }
+            read += inBlock;
+            position += (long) inBlock * RECORD_SIZE;
+            if (inBlock == 0) break;
+        }
+
+        if (channel.size() != position) channel.truncate(position);
+        // Appends go after the records read, whether or not they were valid
+        records = (position - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Checks whether a score would make it into the index
+     * @param score int - score of a game
+     * @return boolean - true if the score is higher than the lowest indexed
+     * score, or the index is not full
+     */
+    private boolean qualifies(int score) {
+        return topCount < top.length || score > top[topCount - 1].score;
+    }
+
+    /**
+     * Inserts an entry into the index in order, dropping the lowest entry if
+     * the index is full
+     * @param entry Entry object - entry to insert
+     */
+    private void offer(Entry entry) {
+        int i = Math.min(topCount, top.length - 1);
+        while (i > 0 && top[i - 1].score < entry.score) {
+            top[i] = top[i - 1];
+            i--;
+        }
+        top[i] = entry;
+        if (topCount < top.length) topCount++;
+    }
+
+    /**
+     * Computes the checksum of the 36 bytes of a record before its checksum.
+     * Moves the position of the buffer and leaves its limit at its capacity,
+     * so only absolute reads and writes can be made on it afterwards.
+     * @param buffer ByteBuffer object - buffer holding the record
+     * @param offset int - position of the record in the buffer
+     * @return int - CRC32C of the record
+     */
+    private int checksum(ByteBuffer buffer, int offset) {
+        crc.reset();
+        buffer.limit(offset + RECORD_SIZE - 4).position(offset);
+        crc.update(buffer);
+        buffer.limit(buffer.capacity());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Prints the highest scores in a score log
+     * @param args String[] - path of the log, optionally the number of scores
+     */
+    public static void main(String[] args) throws IOException {
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        long start = System.nanoTime();
+        try (ScoreLog log = new ScoreLog(Paths.get(args[0]), Math.max(n, 100))) {
+            System.out.printf("%d games, index rebuilt in %.1fms%n", log.getCount(), (System.nanoTime() - start) / 1e6);
+            int rank = 1;
+            for (Entry entry : log.getTop(n)) {
+                System.out.printf("%3d. %6d  %-9s seed=%x ticks=%d %.1fs %tF %<tT%n", rank++, entry.getScore(),
+                    entry.getController(), entry.getSeed(), entry.getTicks(), entry.getDuration() / 1e3, entry.getEndTime());
+            }
+        }
+    }
+}
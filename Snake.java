@@ -1,5 +1,6 @@
 import java.awt.Point;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Class for representing the Snake game and its logic. Contains game logic 
@@ -7,11 +8,35 @@ import java.util.Random;
  * keyboard input. 
  * enum Direction - cardinal directions that snake can move in
  * Private int snakeLength - length of snake
- * Private int[][] snakeBody - 2D array of coordinates for body parts of snake
- * Private Point apple - Location of apple
+ * Private int width, height - dimensions of the board
+ * Private int cells - number of cells on the board (width * height)
+ * Private Level level - layout of the board: walls, teleporters and edges
+ * Private int[] nextX, prevX, nextY, prevY - neighbouring column/row of each
+ * column/row, wrapping around the edges of the board where the level does,
+ * or -1 past an edge that does not wrap
+ * Private int[] snakeBody - circular buffer of packed cell indices 
+ * (y * width + x) for body parts of snake, grown as the snake grows
+ * Private int mask - size of snakeBody minus one (size is a power of two)
+ * Private int head - index into snakeBody of the head of the snake
+ * Private int headX, headY - coordinates of the head of the snake
+ * Private int tail - index into snakeBody of the last body part of the snake
+ * Private long[] occupied - bitset over the cells of the board that are
+ * covered by the snake
+ * Private CellSet freeCells - set of cells not covered by the snake, walls or
+ * teleporters
+ * Private int[] changes - packed cells whose contents changed since the last draw
+ * Private int changeCount - number of cells recorded in changes
+ * Private boolean appleMoved - whether apple has moved since the last draw
+ * Private boolean redrawAll - whether the whole board needs to be redrawn
+ * Private SplittableRandom seeds - source of the seed of each new game
+ * Private long seed - seed of the current game
+ * Private SplittableRandom random - source of apple and teleport locations in
+ * the current game, seeded by seed
+ * Private int apple - packed cell index of apple, or -1 if there is none
  * Private Direction direction - Current direction snake moves in
  * Private boolean alive - Status of snake (is game in progress?)
  * Private boolean gameOver - Status of game (is game over?)
+ * Private boolean won - Status of game (has snake filled the whole board?)
  * Private boolean dirChanged - Status of input direction (has it been implemented by snake?)
  */
 public class Snake {
@@ -24,28 +49,143 @@ public class Snake {
         NORTH, EAST, SOUTH, WEST
     }
 
+    // Board dimensions used unless given (set with -Dsnake.width / -Dsnake.height)
+    public static final int DEFAULT_WIDTH = Integer.getInteger("snake.width", 30);
+    public static final int DEFAULT_HEIGHT = Integer.getInteger("snake.height", 30);
+    // Initial buffer size, which is doubled whenever the snake outgrows it
+    private static final int MIN_BUFFER = 64;
+    // Changes recorded between draws before falling back to a full redraw:
+    // enough for every update run for one poll, each of which changes the
+    // head and tail cells, and the teleporter and apple cells when they come
+    // into play
+    private static final int MAX_CHANGES = GameFrame.MAX_CATCH_UP * 4;
+
+    private int width;
+    private int height;
+    private int cells;
+    private Level level;
+    private int nextX[];
+    private int prevX[];
+    private int nextY[];
+    private int prevY[];
     private int snakeLength; 
-    private int snakeBody[][];
-    private Point apple;
+    private int snakeBody[];
+    private int mask;
+    private int head;
+    private int headX;
+    private int headY;
+    private int tail;
+    private long occupied[];
+    private CellSet freeCells;
+    private int changes[];
+    private int changeCount;
+    private boolean appleMoved;
+    private boolean redrawAll;
+    private SplittableRandom seeds;
+    private long seed;
+    private SplittableRandom random;
+    private int apple;
     private Direction direction;
     private boolean alive; 
     private boolean gameOver;
+    private boolean won;
 
     private boolean dirChanged;
 
     /**
-     * Sole Default Constructor - Initialises variables snakeLength, direction,
-     * alive, gameOver, snakeBody and generates initial position for apple. 
+     * Default Constructor - Creates a game whose apple and teleport locations
+     * are different every time.
      */
     public Snake() {
-        snakeLength = 6;
-        direction = Direction.EAST;
-        alive = false;
-        gameOver = false;
-        snakeBody = new int[900][2];
-        apple = generateLocation();
+        this(Level.getDefault(), new SplittableRandom());
+    }
+
+    /**
+     * Constructor - Creates a game whose sequence of game seeds, and so apple 
+     * and teleport locations, are determined by the given seed, so that games 
+     * can be played again exactly by giving the same inputs.
+     * @param seed long - seed for the seeds of each game
+     */
+    public Snake(long seed) {
+        this(Level.getDefault(), new SplittableRandom(seed));
+    }
+
+    /**
+     * Constructor - Creates a game on a board of the given size, whose 
+     * sequence of game seeds is determined by the given seed.
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     * @param seed long - seed for the seeds of each game
+     */
+    public Snake(int width, int height, long seed) {
+        this(Level.open(width, height), new SplittableRandom(seed));
+    }
+
+    /**
+     * Constructor - Creates a game on the given level, whose sequence of game
+     * seeds is determined by the given seed.
+     * @param level Level object - layout of the board
+     * @param seed long - seed for the seeds of each game
+     */
+    public Snake(Level level, long seed) {
+        this(level, new SplittableRandom(seed));
+    }
+
+    /**
+     * Initialises the board dimensions, the neighbour tables used to wrap 
+     * around the edges of the board, and the arrays holding the snake body 
+     * and free cells, and starts the first game with a seed from the given 
+     * generator.
+     * @param level Level object - layout of the board
+     * @param seeds SplittableRandom object - source of the seed of each game
+     */
+    private Snake(Level level, SplittableRandom seeds) {
+        this.level = level;
+        this.seeds = seeds;
+        width = level.getWidth();
+        height = level.getHeight();
+        cells = width * height;
+
+        // Moving past an edge that does not wrap leads to -1, off the board
+        nextX = new int[width];
+        prevX = new int[width];
+        for (int x = 0; x < width; x++) {
+            nextX[x] = (x == width - 1) ? (level.wrapsColumns() ? 0 : -1) : x + 1;
+            prevX[x] = (x == 0) ? (level.wrapsColumns() ? width - 1 : -1) : x - 1;
+        }
+        nextY = new int[height];
+        prevY = new int[height];
+        for (int y = 0; y < height; y++) {
+            nextY[y] = (y == height - 1) ? (level.wrapsRows() ? 0 : -1) : y + 1;
+            prevY[y] = (y == 0) ? (level.wrapsRows() ? height - 1 : -1) : y - 1;
+        }
+
+        snakeBody = new int[MIN_BUFFER];
+        mask = MIN_BUFFER - 1;
+        occupied = new long[(cells + 63) >>> 6];
+        freeCells = new CellSet(cells);
+        changes = new int[MAX_CHANGES];
+        reset();
     }
 
+    /**
+     * Accessor for private class variable width
+     * @return int - number of columns on the board
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Accessor for private class variable height
+     * @return int - number of rows on the board
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Accessor for private class variable level
+     * @return Level object - layout of the board
+     */
+    public Level getLevel() { return level; }
+
     /**
      * Modifier for private class variable alive (can only set it to true)
      */
@@ -63,6 +203,24 @@ public class Snake {
      */
     public boolean isGameOver() { return this.gameOver; }
 
+    /**
+     * Accessor for private class variable won
+     * @return boolean - whether snake has filled the whole board or not
+     */
+    public boolean isWon() { return this.won; }
+
+    /**
+     * Accessor for private class variable seed
+     * @return long - seed of the current game
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * Accessor for private class variable direction
+     * @return Direction ENUM - direction snake moves in on the next update
+     */
+    public Direction getDirection() { return direction; }
+
     /**
      * Accessor for private class variable snakeLength
      * @return int - length of snake 
@@ -75,50 +233,155 @@ public class Snake {
      * @param i int - index of snake body to find location of 
      * @return Point object - location of snake body corresponding to index
      */
-    public Point getBody(int i) { return new Point(snakeBody[i][0], snakeBody[i][1]); }
+    public Point getBody(int i) { 
+        int cell = snakeBody[(head + i) & mask];
+        return new Point(cell % width, cell / width); 
+    }
+
+    /**
+     * Accessor for indexed body element of private class variable snakeBody,
+     * without creating a Point object
+     * @param i int - index of snake body to find location of
+     * @return int - packed cell index (y * width + x) of that body part
+     */
+    public int getBodyCell(int i) { return snakeBody[(head + i) & mask]; }
+
+    /**
+     * Checks whether the given location is covered by the snake body
+     * @param p Point object - location to check
+     * @return boolean - true if location is covered by the snake, else false
+     */
+    public boolean isBody(Point p) { return isOccupied(p.y * width + p.x); }
+
+    /**
+     * Checks whether the given cell is covered by the snake body, without 
+     * needing a Point object
+     * @param cell int - packed cell index (y * width + x) to check
+     * @return boolean - true if cell is covered by the snake, else false
+     */
+    public boolean isBodyCell(int cell) { return isOccupied(cell); }
+
+    /**
+     * Copies the bitset of cells covered by the snake body into the given 
+     * array, e.g. to take a snapshot of the game for another thread
+     * @param into long[] - array of at least (width * height + 63) / 64 
+     * words; bit (cell & 63) of word (cell >>> 6) is set for each covered cell
+     */
+    public void copyOccupied(long[] into) {
+        System.arraycopy(occupied, 0, into, 0, occupied.length);
+    }
+
+    /**
+     * Accessor for private class variable changeCount
+     * @return int - number of cells changed since the last draw
+     */
+    public int getChangeCount() { return changeCount; }
+
+    /**
+     * Accessor for indexed element of private class variable changes. 
+     * @param i int - index of change to find location of
+     * @return Point object - location of cell that changed since the last draw
+     */
+    public Point getChange(int i) { 
+        int cell = changes[i];
+        return new Point(cell % width, cell / width); 
+    }
+
+    /**
+     * Accessor for indexed element of private class variable changes, without
+     * creating a Point object
+     * @param i int - index of change to find location of
+     * @return int - packed cell index (y * width + x) of cell that changed 
+     * since the last draw
+     */
+    public int getChangeCell(int i) { return changes[i]; }
+
+    /**
+     * Accessor for private class variable appleMoved
+     * @return boolean - whether apple has moved since the last draw
+     */
+    public boolean isAppleMoved() { return appleMoved; }
+
+    /**
+     * Accessor for private class variable redrawAll
+     * @return boolean - whether the whole board needs to be redrawn
+     */
+    public boolean isRedrawAll() { return redrawAll; }
+
+    /**
+     * Forgets the changes recorded since the last draw, once they have been 
+     * rendered onto the maze
+     */
+    public void clearChanges() {
+        changeCount = 0;
+        appleMoved = false;
+        redrawAll = false;
+    }
+
+    /**
+     * Accessor for private class variable apple, as a new Point object
+     * @return Point object - location of apple, or null if there is none
+     */
+    public Point getApple() { 
+        return (apple < 0) ? null : new Point(apple % width, apple / width); 
+    }
 
     /**
-     * Accessor for private class variable apple
-     * @return Point object - location of apple
+     * Accessor for private class variable apple, without creating a Point 
+     * object
+     * @return int - packed cell index (y * width + x) of apple, or -1 if 
+     * there is none
      */
-    public Point getApple() { return apple; }
+    public int getAppleCell() { return apple; }
 
     /**
      * Update snake for current poll. Snakes progress forwards in appropriate 
      * direction. Accounts for out-of-bounds moves, where Snake teleports to 
-     * other side (since Maze is wrapped around itself). Checks whether snake 
-     * has eaten itself, an apple or the robot, and will carry out corresponding
+     * other side (since Maze is wrapped around itself) or dies where the 
+     * level does not wrap. Checks whether snake has hit a wall, or eaten 
+     * itself, an apple or a teleporter, and will carry out corresponding
      * logic in each cases, through subsidiary methods. 
      */
     public void update() {
         // Only update snake while it's alive (i.e. game in progress)
         if (alive) {
-            // Move snake body parts forwards 
-            for(int i = snakeLength; i > 0; i--) {
-                snakeBody[i] = snakeBody[i-1].clone();
-            }
-            
+            int oldTail = snakeBody[tail];
+
             /* Move snake head forward appropriately according to direction and 
-            teleport snake when it heads out of bounds (wrap maze around to itself)*/
+            teleport snake when it heads out of bounds (wrap maze around to itself)
+            by looking up the neighbouring column or row */
+            int x = headX, y = headY;
             switch(direction) {
                 case NORTH:
-                    snakeBody[0][1] = snakeBody[0][1] - 1;
-                    if (snakeBody[0][1] < 0) snakeBody[0][1] = 29;
+                    y = prevY[y];
                     break;
                 case SOUTH:
-                    snakeBody[0][1] = snakeBody[0][1] + 1;
-                    if (snakeBody[0][1] > 29) snakeBody[0][1] = 0;
+                    y = nextY[y];
                     break;
                 case WEST:
-                    snakeBody[0][0] = snakeBody[0][0] - 1;
-                    if (snakeBody[0][0] < 0) snakeBody[0][0] = 29;
+                    x = prevX[x];
                     break;
                 case EAST:
-                    snakeBody[0][0] = snakeBody[0][0] + 1;
-                    if (snakeBody[0][0] > 29) snakeBody[0][0] = 0;
+                    x = nextX[x];
                     break;
             }
 
+            // Set gameOver and alive to false, without moving, when snake 
+            // has run off an edge that does not wrap
+            if ((x | y) < 0) {
+                alive = false;
+                gameOver = true;
+                return;
+            }
+            headX = x;
+            headY = y;
+            int newHead = y * width + x;
+
+            // Move snake body parts forwards by moving the head and tail pointers
+            head = (head - 1) & mask;
+            tail = (tail - 1) & mask;
+            snakeBody[head] = newHead;
+
             dirChanged = false;
 
             // Set gameOver and alive to false when snake has bit itself
@@ -126,10 +389,19 @@ public class Snake {
                 alive = false;
                 gameOver = true;
             }
+            setOccupied(newHead);
 
-            // Check for collision with apple and bottom-right corner robot
+            // Check for collision with apple, then release the cell left by 
+            // the tail unless the snake has grown into it or still covers it
             checkAppleCollision();
-            randomTeleportCheck();
+            if (snakeBody[tail] != oldTail && newHead != oldTail) {
+                clearOccupied(oldTail);
+            }
+
+            // Check for collision with a wall or a teleporter (e.g. the robot)
+            // with one test, leaving the rarely taken branch out of line so 
+            // that update() stays small enough to be inlined
+            if (level.isBlocked(newHead)) enterBlocked(newHead);
         }
         
     }
@@ -141,10 +413,9 @@ public class Snake {
      * @return boolean - true if snake has eaten itself, else false
      */
     private boolean checkSelfCollision() {
-        for(int i = snakeLength; i > 0; i--){
-            if(snakeBody[i][0] == snakeBody[0][0] && snakeBody[i][1] == snakeBody[0][1]) return true;
-        }
-        return false;
+        // Head is not yet marked, so the bitset covers the rest of the body 
+        // along with the cell that the tail has just left
+        return isOccupied(snakeBody[head]);
     }
 
     /**
@@ -152,59 +423,147 @@ public class Snake {
      * it) and if so increments length of snake and generates new random apple
      */
     private void checkAppleCollision() {
-        if (apple.equals(new Point(snakeBody[0][0], snakeBody[0][1]))) {
+        if (snakeBody[head] == apple) {
             snakeLength++;
-            apple = generateLocation();
+            tail = (tail + 1) & mask;
+            // Keep room in the buffer for the cell vacated by the tail
+            if (snakeLength > mask) growBody(snakeLength + 1);
+            int next = generateCell();
+            if (next >= 0) {
+                apple = next;
+                appleMoved = true;
+            } else {
+                // No free cell left for the apple, so the board is full
+                win();
+            }
         }
     }
 
     /**
-     * Checks if provided location is empty in maze or is occupied 
-     * (i.e. by the snake or robot) by checking bottom-right corner and 
-     * also looping through the snake body elements
-     * @param x int - x coordinate of location to check
-     * @param y int - y coordinate of location to check
-     * @return boolean - true if location is empty, else false
+     * Checks whether the given cell is covered by the snake body 
+     * @param cell int - packed cell index (y * width + x)
+     * @return boolean - true if cell is covered by the snake, else false
      */
-    private boolean isFree(int x, int y) {
-        // Check if location corresponds to bottom-right corner (i.e. the robot)
-        if (x == 29 && y == 29) return false;
-        // Check if location corresponds to a part of the snake body
-        for (int i = 0; i < snakeLength; i++) {
-            if (snakeBody[i][0] == x && snakeBody[i][1] == y) return false;
+    private boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Marks the given cell as covered by the snake body
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void setOccupied(int cell) {
+        occupied[cell >>> 6] |= 1L << cell;
+        freeCells.remove(cell);
+        recordChange(cell);
+    }
+
+    /**
+     * Marks the given cell as no longer covered by the snake body
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void clearOccupied(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        // Walls and teleporters are excluded from the set, so are not added
+        freeCells.add(cell);
+        recordChange(cell);
+    }
+
+    /**
+     * Records that the given cell has changed since the last draw. Falls back
+     * to redrawing the whole board if too many changes build up between draws.
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void recordChange(int cell) {
+        if (redrawAll) return;
+        if (changeCount == MAX_CHANGES) {
+            redrawAll = true;
+        } else {
+            changes[changeCount++] = cell;
         }
-        return true;
     }
 
     /**
-     * Generates a random location in the maze that is not occupied by an
-     * item (i.e. snake / robot) and returns it as a Point object. 
+     * Picks a uniformly random location in the maze that is not occupied by 
+     * an item (i.e. snake / wall / teleporter) from the set of free cells and 
+     * returns it as a Point object. 
      *
-     * @return Point object - random empty location in maze
+     * @return Point object - random empty location in maze, or null if the 
+     * board is full
      */
     public Point generateLocation() {
-        Random random = new Random();
-        int x, y;
-        // Keep generating random coordinates until corresponding location is empty
-        do {
-            x = random.nextInt(30);
-            y = random.nextInt(30);
-        } while (!isFree(x, y));
-        return new Point(x, y);
+        int cell = generateCell();
+        if (cell < 0) return null;
+        return new Point(cell % width, cell / width);
+    }
+
+    /**
+     * Picks a uniformly random location in the maze that is not occupied by 
+     * an item (i.e. snake / wall / teleporter) from the set of free cells, 
+     * without creating a Point object. 
+     *
+     * @return int - packed cell index (y * width + x) of random empty 
+     * location in maze, or -1 if the board is full
+     */
+    public int generateCell() {
+        return freeCells.random(random);
     }
 
     /**
-     * If the head of the snake is at the bottom right corner (i.e. the robot), 
-     * Teleports the head of the snake to random location in the maze that is 
-     * not occupied by another item (i.e. its body / the robot)
+     * Ends the game if the head of the snake has run into a wall. Otherwise 
+     * teleports the head from the teleporter it is on (e.g. the robot in the 
+     * bottom right corner) to the teleporter's destination, or to a random 
+     * location in the maze that is not occupied by another item (i.e. its 
+     * body / a wall / a teleporter). The snake dies if its body is on the 
+     * destination, and eats the apple if that is on the destination. Nothing
+     * happens if the snake has already died on this move (e.g. by biting 
+     * itself on a teleporter its body covers).
+     * @param from int - packed cell index of the wall or teleporter
      */
-    public void randomTeleportCheck() {
-        // If snake head at bottom-right corner, teleport to random empty location
-        if (snakeBody[0][0] == 29 && snakeBody[0][1] == 29) {
-            Point randP = generateLocation();
-            snakeBody[0][0] = (int) randP.getX();
-            snakeBody[0][1] = (int) randP.getY();
+    private void enterBlocked(int from) {
+        if (!alive) return;
+        if (level.isWall(from)) {
+            alive = false;
+            gameOver = true;
+            return;
+        }
+        int cell = level.getDestination(from);
+        if (cell == Level.RANDOM) {
+            cell = generateCell();
+            if (cell < 0) {
+                // No free cell left to teleport to, so the board is full
+                win();
+                return;
+            }
+        } else if (isOccupied(cell)) {
+            // Teleported into its own body
+            alive = false;
+            gameOver = true;
+            return;
         }
+        clearOccupied(from);
+        headX = cell % width;
+        headY = cell / width;
+        snakeBody[head] = cell;
+        setOccupied(cell);
+
+        // The apple was checked for on the teleporter, so check the destination
+        if (cell == apple) {
+            // The tail was released before the teleport, so cover again the
+            // cell it left, which the snake grows back into
+            int grown = snakeBody[(tail + 1) & mask];
+            if (!isOccupied(grown)) setOccupied(grown);
+            checkAppleCollision();
+        }
+    }
+
+    /**
+     * Ends the game as a win once the snake has covered every free cell
+     */
+    private void win() {
+        won = true;
+        alive = false;
+        gameOver = true;
     }
 
     /**
@@ -214,8 +573,9 @@ public class Snake {
      * validates the move and ensures no impossible moves are made. 
      * 
      * @param d Direction ENUM - direction corresponding to the keyboard input
+     * @return boolean - true if the direction was set, false if it was ignored
      */
-    public void setDirection(Direction d) {
+    public boolean setDirection(Direction d) {
         /* If Snake isn't moving in the opposite direction and previous direction 
         has been forced onto snake, then set the direction from input */
         switch(d){
@@ -223,37 +583,125 @@ public class Snake {
                 if (direction != Direction.SOUTH && !dirChanged) {
                     dirChanged = true;
                     direction = Direction.NORTH;
+                    return true;
                 }
                 break;
             case EAST: 
                 if (direction != Direction.WEST && !dirChanged) {
                     dirChanged = true;
                     direction = Direction.EAST;
+                    return true;
                 }
                 break;
             case SOUTH:
                 if (direction != Direction.NORTH && !dirChanged) {
                     dirChanged = true;
                     direction = Direction.SOUTH;
+                    return true;
                 }
                 break;
             case WEST: 
                 if (direction != Direction.EAST && !dirChanged) {
                     dirChanged = true;
                     direction = Direction.WEST;
+                    return true;
                 }
         }
+        return false;
     }
 
     /**
      * Resets the class variables to the required initial values for the start 
-     * of a new game
+     * of a new game, using the next seed from the seed generator
      */
     public void reset() {
+        reset(seeds.nextLong());
+    }
+
+    /**
+     * Resets the class variables to the required initial values for the start 
+     * of a new game with the given seed. Generates the initial position for 
+     * the apple from the seed, so that the game can be replayed.
+     * @param seed long - seed for the apple and teleport locations of the game
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        random = new SplittableRandom(seed);
         snakeLength = 6;
         alive = false;
         gameOver = false;
+        won = false;
+        dirChanged = false;
         direction = Direction.EAST;
-        snakeBody = new int[900][2];
+        resetBody();
+        apple = generateCell();
+    }
+
+    /**
+     * Starts a game from a prepared position rather than the usual starting 
+     * position, e.g. for benchmarking a snake of a given length. The body 
+     * parts do not need to be adjacent to each other. 
+     *
+     * @param body Point[] - locations of the body parts of the snake, head first
+     * @param direction Direction ENUM - direction snake is moving in
+     * @param apple Point object - location of apple, or null if there is none
+     */
+    public void load(Point[] body, Direction direction, Point apple) {
+        Arrays.fill(occupied, 0L);
+        level.fillFree(freeCells);
+        redrawAll = true;
+        snakeLength = 0;
+        if (body.length > mask) growBody(body.length + 1);
+        for (int i = 0; i < body.length; i++) {
+            snakeBody[i] = body[i].y * width + body[i].x;
+            setOccupied(snakeBody[i]);
+        }
+        snakeLength = body.length;
+        head = 0;
+        tail = snakeLength - 1;
+        headX = body[0].x;
+        headY = body[0].y;
+        this.direction = direction;
+        this.apple = (apple == null) ? -1 : apple.y * width + apple.x;
+        alive = true;
+        gameOver = false;
+        won = false;
+        dirChanged = false;
+    }
+
+    /**
+     * Places all body parts of the snake on the start of the level (the 
+     * top-left corner of the maze unless the level says otherwise) and 
+     * rebuilds the occupancy bitset and free cell set to match
+     */
+    private void resetBody() {
+        int start = level.getStart();
+        Arrays.fill(snakeBody, 0, snakeLength, start);
+        Arrays.fill(occupied, 0L);
+        level.fillFree(freeCells);
+        head = 0;
+        tail = snakeLength - 1;
+        headX = start % width;
+        headY = start / width;
+        setOccupied(start);
+        redrawAll = true;
+    }
+
+    /**
+     * Replaces the snake body buffer with a larger one, at least double the 
+     * size, copying the body parts across in order from the head. 
+     * @param minSize int - number of entries the new buffer must hold
+     */
+    private void growBody(int minSize) {
+        int size = snakeBody.length * 2;
+        while (size < minSize) size *= 2;
+        int grown[] = new int[size];
+        for (int i = 0; i < snakeLength; i++) {
+            grown[i] = snakeBody[(head + i) & mask];
+        }
+        snakeBody = grown;
+        mask = size - 1;
+        head = 0;
+        tail = snakeLength - 1;
     }
 }
@@ -0,0 +1,296 @@
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for benchmarking the hot paths of the game logic and framework, run
+ * headless. Each benchmark is run for a number of warmup iterations followed
+ * by measured iterations, for each snake length, and reports the time and the
+ * bytes allocated per operation, so that regressions in speed or per-tick
+ * garbage are visible. With -Dsnake.checkAllocation=true, exits with an error
+ * if any benchmark on the path of a tick (updating, collision checks and
+ * drawing) allocates, so that per-tick garbage cannot creep back in.
+ * Snakes are laid out along a fixed cycle through every cell above the bottom
+ * row, and follow the cycle so they can move forever without dying. The apple
+ * is parked in the bottom row, off the cycle, so the length stays fixed.
+ * The JMH benchmarks in jmh/ (see build.gradle) measure the same operations
+ * with the board size as a parameter, using the same Route.
+ * Private static int[] LENGTHS - snake lengths to benchmark
+ * Private static Route route - cycle the snakes are laid out along
+ * Private static long sink - results consumed so the JIT cannot remove work
+ * Private static boolean allocated - whether a tick benchmark has allocated
+ */
+public class SnakeBenchmark {
+
+    /**
+     * Benchmarked operation, run the given number of times
+     */
+    private interface Benchmark {
+        void run(int ops);
+    }
+
+    private static final int WIDTH = 30;
+    private static final int LENGTHS[] = {6, 100, 450, 869, 899};
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+    // Benchmarks on the path of a tick, which must not allocate
+    private static final List<String> TICK_PATH = Arrays.asList(
+        "update", "selfCollision", "generateCell", "updateAndDraw", "drawFull");
+    // Bytes per operation below which a benchmark counts as allocation-free
+    // (any allocation made on every operation is at least 16 bytes)
+    private static final double ALLOCATION_TOLERANCE = 0.01;
+
+    private static final Route route = new Route(WIDTH);
+    private static long sink;
+    private static boolean allocated;
+
+    /**
+     * Runs every benchmark for every snake length and prints the results
+     * @param args String[] - optionally the names of benchmarks to run
+     */
+    public static void main(String[] args) {
+        HeadlessGame headless = new HeadlessGame(route::follow);
+        GameFrame gameFrame = new GameFrame(headless, headless, new Snake(WIDTH, WIDTH, 0));
+        Snake snake = gameFrame.getSnake();
+        SnakeState state = new SnakeState(snake);
+        SnakeState copy = new SnakeState(snake);
+
+        System.out.printf("%-18s %6s %6s %12s %10s%n", "Benchmark", "length", "fill", "ns/op", "B/op");
+        for (int length : LENGTHS) {
+            // Snake cannot move along the cycle once it is longer than the cycle
+            boolean moves = route.moves(length);
+
+            if (moves) run(args, "update", snake, length, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    snake.setDirection(route.follow(snake));
+                    snake.update();
+                    snake.clearChanges();
+                }
+            });
+            run(args, "selfCollision", snake, length, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    if (snake.isBody(route.getCell(i % length))) sink++;
+                }
+            });
+            run(args, "generateCell", snake, length, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    sink += snake.generateCell();
+                }
+            });
+            if (moves) run(args, "updateAndDraw", snake, length, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    snake.setDirection(route.follow(snake));
+                    gameFrame.update();
+                    gameFrame.draw(false);
+                }
+            });
+            if (moves) run(args, "stateMoveUndo", snake, length, ops -> {
+                state.load(snake);
+                Snake.Direction d = route.follow(snake);
+                for (int i = 0; i < ops; i++) {
+                    sink += state.move(d);
+                    state.undo();
+                }
+            });
+            run(args, "stateCopy", snake, length, ops -> {
+                state.load(snake);
+                for (int i = 0; i < ops; i++) {
+                    copy.copyFrom(state);
+                    sink += copy.getHash();
+                }
+            });
+            run(args, "drawFull", snake, length, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    gameFrame.draw(true);
+                }
+            });
+            run(args, "getText", snake, length, ops -> {
+                for (int i = 0; i < ops; i++) {
+                    sink += gameFrame.getText().length();
+                }
+            });
+        }
+        if (sink == 42) System.out.println();
+
+        if (allocated && Boolean.getBoolean("snake.checkAllocation")) {
+            System.err.println("Benchmarks on the path of a tick allocated memory");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a single benchmark, if it has been selected, and prints its result
+     * @param args String[] - names of benchmarks to run (all if empty)
+     * @param name String - name of the benchmark
+     * @param snake Snake object - snake that the benchmark operates on
+     * @param length int - length of snake to benchmark with
+     * @param benchmark Benchmark object - operation to benchmark
+     */
+    private static void run(String[] args, String name, Snake snake, int length, Benchmark benchmark) {
+        if (args.length > 0 && !Arrays.asList(args).contains(name)) return;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int ops = 1000;
+        long totalOps = 0, totalNanos = 0, totalBytes = 0;
+
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            // Start each iteration from the same position
+            route.load(snake, length);
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long done = 0, elapsed;
+            do {
+                benchmark.run(ops);
+                done += ops;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ITERATION_NANOS);
+            bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+            if (!snake.isAlive()) throw new IllegalStateException(name + " ended the game at length " + length);
+
+            if (i >= WARMUP) {
+                totalOps += done;
+                totalNanos += elapsed;
+                totalBytes += bytes;
+            }
+        }
+
+        double bytesPerOp = (double) totalBytes / totalOps;
+        boolean failed = TICK_PATH.contains(name) && bytesPerOp >= ALLOCATION_TOLERANCE;
+        if (failed) allocated = true;
+        System.out.printf("%-18s %6d %5.1f%% %12.2f %10.2f%s%n", name, length, 100.0 * route.fill(length),
+            (double) totalNanos / totalOps, bytesPerOp, failed ? "  ALLOCATES" : "");
+    }
+
+    /**
+     * Cycle through every cell of a square board above the bottom row, which
+     * snakes are laid out along and follow so they can move forever without
+     * dying: along the top row, down and up each column from the right, then
+     * back up the left column. The cells of the route are the cycle followed
+     * by the bottom row (except the robot in the bottom right corner), so
+     * that a snake covering the whole route fills the board. The apple is
+     * parked in the bottom left corner, off the cycle.
+     * Private int width - width and height of the board
+     * Private int cycle - number of cells on the cycle
+     * Private int[] next - cell following each cell along the cycle
+     * Private Point[] cells - cells of the cycle, followed by the bottom row
+     */
+    static final class Route {
+
+        private final int width;
+        private final int cycle;
+        private final int next[];
+        private final Point cells[];
+
+        /**
+         * Sole Constructor - Builds the route for a square board of the given
+         * width, which must be even (so that the last column ends next to the
+         * left column) and at least 4
+         * @param width int - width and height of the board
+         * @throws IllegalArgumentException if the width is odd or less than 4
+         */
+        Route(int width) {
+            if (width < 4 || width % 2 != 0) {
+                throw new IllegalArgumentException("Route needs an even width of at least 4, not " + width);
+            }
+            this.width = width;
+            cycle = width * (width - 1);
+            next = new int[width * width];
+            cells = new Point[width * width - 1];
+
+            int n = 0;
+            for (int x = 0; x < width; x++) {
+                cells[n++] = new Point(x, 0);
+            }
+            for (int x = width - 1; x > 0; x--) {
+                boolean down = (width - 1 - x) % 2 == 0;
+                for (int i = 1; i < width - 1; i++) {
+                    cells[n++] = new Point(x, down ? i : width - 1 - i);
+                }
+            }
+            for (int y = width - 2; y > 0; y--) {
+                cells[n++] = new Point(0, y);
+            }
+            for (int i = 0; i < cycle; i++) {
+                Point from = cells[i];
+                Point to = cells[(i + 1) % cycle];
+                next[from.y * width + from.x] = to.y * width + to.x;
+            }
+            for (int x = 0; x < width - 1; x++) {
+                cells[n++] = new Point(x, width - 1);
+            }
+        }
+
+        /**
+         * Accessor for private class variable width
+         * @return int - width and height of the board
+         */
+        int getWidth() { return width; }
+
+        /**
+         * Returns a cell of the route
+         * @param i int - index of the cell along the route
+         * @return Point object - the cell
+         */
+        Point getCell(int i) { return cells[i]; }
+
+        /**
+         * Checks whether a snake of the given length can move along the cycle,
+         * which it cannot once it is as long as the cycle
+         * @param length int - length of the snake
+         * @return boolean - true if the snake can follow the cycle, else false
+         */
+        boolean moves(int length) { return length < cycle; }
+
+        /**
+         * Returns the fraction of the free cells (all but the robot) covered
+         * by a snake of the given length
+         * @param length int - length of the snake
+         * @return double - fill ratio from 0 to 1
+         */
+        double fill(int length) { return (double) length / (width * width - 1); }
+
+        /**
+         * Lays the snake out along the route with the given length, with its
+         * head at the end and the apple parked in the bottom row
+         * @param snake Snake object - snake to lay out, on a board of this width
+         * @param length int - length of the snake, from 2 up to the number of
+         * free cells
+         */
+        void load(Snake snake, int length) {
+            Point body[] = new Point[length];
+            for (int i = 0; i < length; i++) {
+                body[i] = cells[length - 1 - i];
+            }
+            Point apple = moves(length) ? new Point(0, width - 1) : null;
+            snake.load(body, direction(body[1].x, body[1].y, body[0].x, body[0].y), apple);
+        }
+
+        /**
+         * Chooses the direction that keeps the head of the snake on the cycle
+         * @param snake Snake object - snake to steer
+         * @return Direction ENUM - direction of the next cell on the cycle
+         */
+        Snake.Direction follow(Snake snake) {
+            int head = snake.getBodyCell(0);
+            return direction(head % width, head / width, next[head] % width, next[head] / width);
+        }
+
+        /**
+         * Finds the direction of a move between two adjacent cells
+         * @param fromX int - column of cell moved from
+         * @param fromY int - row of cell moved from
+         * @param toX int - column of cell moved to
+         * @param toY int - row of cell moved to
+         * @return Direction ENUM - direction of the move
+         */
+        private static Snake.Direction direction(int fromX, int fromY, int toX, int toY) {
+            if (toX == fromX + 1) return Snake.Direction.EAST;
+            if (toX == fromX - 1) return Snake.Direction.WEST;
+            if (toY == fromY + 1) return Snake.Direction.SOUTH;
+            return Snake.Direction.NORTH;
+        }
+    }
+}
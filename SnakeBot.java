@@ -0,0 +1,14 @@
+/**
+ * Interface for automated controllers of the Snake, used in place of the 
+ * keyboard input when the game is run headless.
+ */
+public interface SnakeBot {
+
+    /**
+     * Chooses the direction for the Snake to move in on the next update
+     * 
+     * @param snake Snake object - current state of the game
+     * @return Direction ENUM - direction to move in (invalid moves are ignored)
+     */
+    Snake.Direction decide(Snake snake);
+}
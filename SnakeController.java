@@ -1,15 +1,15 @@
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import sun.misc.Unsafe;
 import java.awt.Point;
 import java.awt.Color;
 
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import java.awt.FlowLayout;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import uk.ac.warwick.dcs.maze.logic.*;
-import uk.ac.warwick.dcs.maze.gui.MazeGridPanel;
 
 /*
 Instructions when running the Snake Game with the Maze Environment 
@@ -22,44 +22,101 @@ Instructions when running the Snake Game with the Maze Environment
 /**
  * Main Class which is instantiated in the Maze-Environment and contains the 
  * controlRobot method which is called on every poll. This is where the maze is 
- * retrieved and setup for the game through reflection and the input window is 
+ * retrieved and setup for the game through the MazeBridge and the input window is 
  * setup. This also contains the methods required to interface between the game 
  * framework and the maze-environment for displaying the desired output onto the 
- * maze, by changing the block types appropriately. On every subsequent poll of 
+ * maze, by changing the block types appropriately. Blocks are drawn into a 
+ * frame buffer of the controller's own, and only the columns of it that 
+ * changed are copied into the grid of the maze when the display is updated, 
+ * rather than setting the type of every cell through the maze. On every subsequent poll of 
  * controlRobot, appropriate calls to the game framework are made to update the 
  * game logic and then the maze display is updated using the implemented methods 
- * in this class.
- * enum Block - types of blocks required for the game
+ * in this class. It is the Renderer and GameClock of the game framework when
+ * playing in the maze-environment.
  * Private int polls - Poll counter
- * Private JFrame window - Swing Frame for Input Window
- * Private JLabel label - Swing Label for Text in Input Window
+ * Private JFrame window - Swing Frame for Input Window, or null when there is
+ * no display to show it on (e.g. in the SoakHarness)
+ * Private StatusPanel status - Swing Panel showing the status of the game in
+ * the Input Window
  * Private GameFrame gameFrame - Game Framework object
+ * Private Renderer renderer - renderer the game is drawn through: this 
+ * controller, or a FrameRecorder wrapping it
+ * Private LogicThread logic - thread running the updates of the game, or null
+ * if they are run on each poll (set -Dsnake.logicThread=true to run them on 
+ * a thread of their own, so a slow display cannot hold up the game)
+ * Private SnapshotBuffer snapshots - snapshots published by the logic thread
+ * Private GameSnapshot shown - copy of the snapshot drawn last
  * Private Maze maze - Maze object from Maze Environment
+ * Private MazeBridge bridge - Access to private members of Maze Environment
+ * Private int[][] grid - grid of cell types of the maze, indexed by [x][y], 
+ * created by the controller and handed to the maze in setupEnvironment
+ * Private int[][] frame - frame buffer the blocks of each poll are drawn 
+ * into, indexed by [x][y] like grid
+ * Private long[] dirtyColumns - bitset over the columns of frame that have 
+ * changed since they were last copied into grid
+ * Private int finishX, finishY - column and row the target of the maze was
+ * last moved to, so that a Point is only created when the apple has moved
+ * rather than every time it is drawn
+ * Private TickMetrics metrics - Timings of each phase of a poll
+ * Private volatile long requestedDelay - delay between polls last requested
+ * by the game, in milliseconds, in the low 32 bits, with a count of the 
+ * requests above them so that a repeated request for the same delay is seen
+ * too. Written by the thread updating the game, which is the logic thread 
+ * if there is one, so the maze-environment is only ever told of it from the
+ * polling thread
+ * Private long appliedDelay - value of requestedDelay last broadcast to the
+ * maze-environment
+ * Private boolean deltaRender - whether only changed cells are redrawn on each
+ * poll (set -Dsnake.render=full to clear and redraw the whole maze instead)
  */
-public class SnakeController{
-
-    /**
-     * Types of Blocks that are considered for the rendering of the game onto 
-     * the maze display
-     */
-    enum Block {
-        APPLE, EMPTY, SNAKE
-    }
+public class SnakeController implements Renderer, GameClock {
 
     private int polls;
     private JFrame window;
-    private JLabel label;
+    private StatusPanel status;
     private GameFrame gameFrame; 
+    private Renderer renderer;
+    private LogicThread logic;
+    private SnapshotBuffer snapshots;
+    private GameSnapshot shown;
     private Maze maze;
+    private MazeBridge bridge;
+    private int grid[][];
+    private int frame[][];
+    private long dirtyColumns[];
+    private int finishX;
+    private int finishY;
+    private TickMetrics metrics;
+    private volatile long requestedDelay;
+    private long appliedDelay;
+    private boolean deltaRender;
 
     /**
      * Sole Default Constructor - Initialisies poll counter variables, Sets up
      * Input Windows, Initialises gameFrame with the framework of the game, and 
-     * links it to the window as a key listener.
+     * links it to the window as a key listener, along with a key listener that 
+     * prints the recorded poll timings when M is pressed. Without a display 
+     * (java.awt.headless) no window is made, and key events are passed to the
+     * game framework directly. Fails straight away if the 
+     * maze-environment does not have the layout expected by the MazeBridge.
      */
     public SnakeController() {
-        // Initialise Poll counter
+        // Check that the maze-environment can be modified as required
+        MazeBridge.checkLayout();
+
+        // Initialise Poll counter and metrics
         polls = 0;
+        metrics = new TickMetrics();
+        deltaRender = !"full".equals(System.getProperty("snake.render"));
+
+        status = new StatusPanel();
+
+        // Initialise game framework, recording its frames if asked to
+        renderer = frameRecorder();
+        gameFrame = new GameFrame(renderer, this);
+
+        // Without a display there is no Input Window to show
+        if (GraphicsEnvironment.isHeadless()) return;
 
         // Setup Input Window
         window = new JFrame("Snake Game");
@@ -70,57 +127,108 @@ public class SnakeController{
         window.setResizable(false);
         window.setLayout(new FlowLayout());
 
-        label = new JLabel("");
-
-		window.add(label);
+		window.add(status);
 
-        // Initialise game framework and add key listener
-        gameFrame = new GameFrame(this);
+        // Add key listeners for the game framework and the metrics
         window.addKeyListener(gameFrame);
+        window.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_M) dumpMetrics();
+            }
+        });
+    }
+
+    /**
+     * Accessor for private class variable gameFrame
+     * @return GameFrame object - framework of the game, which key events can
+     * be passed to when there is no Input Window
+     */
+    public GameFrame getGameFrame() { return gameFrame; }
+
+    /**
+     * Returns the status of the game shown in the Input Window by the last
+     * poll. Only to be called from the thread polling the controller.
+     * @return long - status of the game, packed by StatusPanel.pack()
+     */
+    public long getStatus() { return status.getShown(); }
+
+    /**
+     * Creates the renderer that the game is drawn through: this controller,
+     * wrapped in a FrameRecorder when a file to record into is given with 
+     * -Dsnake.frames=file 
+     * @return Renderer object - renderer for the game framework
+     */
+    private Renderer frameRecorder() {
+        String file = System.getProperty("snake.frames");
+        if (file == null) return this;
+        try {
+            Level level = Level.getDefault();
+            return new FrameRecorder(this, Paths.get(file), level.getWidth(), level.getHeight(), FrameRecorder.DEFAULT_SLOTS);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return this;
+        }
     }
 
     /**
      * Method that is called on every poll by the maze-environment. 
-     * Retrieves Maze through reflection on first call and setups up the Maze 
-     * Environment for the Snake game through reflection - maze size, block 
-     * colours, robot. 
-     * On other polls, updates the maze display and input window according to 
-     * the state of the game. 
+     * Retrieves Maze through the MazeBridge on first call and setups up the 
+     * Maze Environment for the Snake game - maze size, block colours, robot. 
+     * On every poll, runs the updates of the game that have fallen due (or 
+     * takes the latest snapshot of the game from the logic thread), then 
+     * updates the maze display and input window according to the state of 
+     * the game, redrawing only the cells that have changed. 
      * 
      * @param robot IRobot object representing the robot
      */
     public void controlRobot(IRobot robot){
         if (polls == 0) {
-            // At start 
-            try {
-                // Get maze using Reflection
-                Field mazeF = robot.getClass().getDeclaredField("maze");
-                mazeF.setAccessible(true);
-                maze = (Maze) mazeF.get(robot);
-                
-                // Setup the Maze and Robot for the Snake game
-                setupEnvironment(robot);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            // At start: Get maze through the bridge
+            bridge = new MazeBridge(robot);
+            maze = bridge.getMaze();
+
+            // Setup the Maze and Robot for the Snake game
+            setupEnvironment();
         }
         
-        // Clear maze, Update game state
-        System.out.println("Clear");
-        clear();
-        System.out.println("Snake Update");
-        gameFrame.update();
-
-        //Draw new state onto maze
-        System.out.println("Draw");
-        gameFrame.draw();
-        System.out.println("Display Update");
-        update();
-
-        // Update Text to be displayed on Input Window
-        System.out.println("Update Text");
-        label.setText(gameFrame.getText());
-        System.out.println("Poll Finished");
+        long time = metrics.startPoll();
+        boolean changed;
+
+        if (logic == null) {
+            // Update game state, as many times as the game's scheduler says are due
+            gameFrame.advance(System.nanoTime());
+            time = metrics.record(TickMetrics.Phase.UPDATE, time);
+
+            // Draw new state onto maze
+            changed = gameFrame.draw(!deltaRender);
+        } else {
+            // Take the latest state published by the logic thread
+            GameSnapshot latest = snapshots.getLatest();
+            time = metrics.record(TickMetrics.Phase.UPDATE, time);
+
+            // Draw the cells that differ from the state drawn last onto maze
+            changed = latest.draw(deltaRender ? shown : null, renderer);
+            shown.copyFrom(latest);
+        }
+        time = metrics.record(TickMetrics.Phase.DRAW, time);
+
+        // Only refresh the display if the maze changed
+        if (changed) {
+            update();
+            time = metrics.record(TickMetrics.Phase.DISPLAY, time);
+        }
+
+        // Update status displayed on Input Window, if it has changed
+        if (logic == null) {
+            status.setStatus(gameFrame.getSnake());
+        } else {
+            status.setStatus(shown.getStatus());
+        }
+        metrics.record(TickMetrics.Phase.TEXT, time);
+
+        // Pass on any change of speed asked for by the game since the last poll
+        applyDelay();
 
         // Increment poll counter
         polls++;
@@ -131,92 +239,110 @@ public class SnakeController{
      * for the snake game. Changes the colours of the types of squares in the 
      * maze. Generates a new maze of the correct size. Moves Robot to the 
      * bottom-right corner and deactives its movement. This is all done through
-     * reflections which may throw errors - handled by try-catch block. 
-     *
-     * @param robot object representing robot in the maze environment
+     * the handles resolved by the MazeBridge. Sets the delay between polls, 
+     * and starts the logic thread if the game is to run on one. 
      */
-    private void setupEnvironment(IRobot robot) {
+    private void setupEnvironment() {
         // Change colours of the walls, passages and beenbefores
-        try {
-            setBGColor("BEENBG", new Color(0, 0, 255));
-            setBGColor("WALLBG", new Color(251, 133, 0));
-            setBGColor("PASSAGEBG", new Color(18, 18, 18));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        MazeBridge.setBeenBeforeColour(new Color(0, 0, 255));
+        MazeBridge.setWallColour(new Color(251, 133, 0));
+        MazeBridge.setPassageColour(new Color(18, 18, 18));
 
         // Generate new maze of the correct size
-        try {
-            Field gridField = maze.getClass().getDeclaredField("grid");
-            gridField.setAccessible(true);
-            gridField.set(maze, new int[30][30]);
-        } catch (Exception e){
-            e.printStackTrace();
-        }
+        Snake snake = gameFrame.getSnake();
+        grid = new int[snake.getWidth()][snake.getHeight()];
+        frame = new int[snake.getWidth()][snake.getHeight()];
+        dirtyColumns = new long[(snake.getWidth() + 63) >>> 6];
+        bridge.setGrid(grid);
+        finishX = -1;
+        finishY = -1;
 
-        // Move robot to bottom-right corner of maze and deactive its movement
-        try {
-            Field startField = maze.getClass().getDeclaredField("start");
-            startField.setAccessible(true);
-            startField.set(maze, new Point(29, 29));
+        // Move robot onto the first teleporter of the level (the bottom-right 
+        // corner of the maze unless the level says otherwise) and deactive its movement
+        Level level = snake.getLevel();
+        int robot = (level.getTeleporterCount() > 0) ? level.getTeleporter(0) : snake.getWidth() * snake.getHeight() - 1;
+        bridge.setStart(new Point(robot % snake.getWidth(), robot / snake.getWidth()));
+        bridge.deactivateRobot();
 
-            Field activeF = robot.getClass().getDeclaredField("active");
-            activeF.setAccessible(true);
-            activeF.set(robot, false);
-        } catch (Exception e) {
-            e.printStackTrace();
+        // Reset the game so the maze-environment is told the starting delay
+        gameFrame.reset();
+
+        // Hand the game over to a thread of its own, if asked to
+        if (Boolean.getBoolean("snake.logicThread")) {
+            snapshots = new SnapshotBuffer(snake.getWidth(), snake.getHeight());
+            shown = new GameSnapshot(snake.getWidth(), snake.getHeight());
+            logic = new LogicThread(gameFrame, snapshots);
+            logic.start();
         }
     }
 
     /**
-     * Clears the entire screen by replacing all the blocks in the maze with 
-     * the square corresponding to EMPTY blocks 
+     * {@inheritDoc}
+     * Clears the entire screen by filling every column of the frame buffer 
+     * with the square corresponding to EMPTY blocks 
      */
-    private void clear() {
-        for(int x = 0; x < 30; x++){
-            for(int y = 0; y < 30; y++){
-                drawBlock(Block.EMPTY, new Point(x, y));
-            }
+    @Override
+    public void clear() {
+        long start = metrics.start();
+        for (int x = 0; x < frame.length; x++) {
+            Arrays.fill(frame[x], Maze.PASSAGE);
         }
+        Arrays.fill(dirtyColumns, -1L);
+        metrics.record(TickMetrics.Phase.CLEAR, start);
     }
 
     /**
+     * {@inheritDoc}
      * Changes the colour of the square at the given position by changing it's 
-     * type - Passage or Wall - depending on what the block is meant to 
-     * represent. If the square is to be an apple, it moves the target of the 
-     * maze instead. 
+     * type - Passage, Wall or BeenBefore - depending on what the block is 
+     * meant to represent. If the square is to be an apple, it moves the 
+     * target of the maze instead. Walls of the level are shown as Walls, like
+     * the snake's body, and teleporters as BeenBefore squares, in the colour 
+     * of the robot standing on the first. 
      * 
      * @param type Block type denoted by Block ENUM
-     * @param position Point object representing location of square to modify
+     * @param x int - column of square to modify
+     * @param y int - row of square to modify
      */
-    public void drawBlock(Block type, Point position) {
+    @Override
+    public void drawBlock(Block type, int x, int y) {
         switch (type) {
             case APPLE:
-                // If block is to be apple: Change position of target to that specified using reflection
-                try {
-                    Field targetField = maze.getClass().getDeclaredField("finish");
-                    targetField.setAccessible(true);
-                    targetField.set(maze, position);
-                } catch (Exception e) {
-                    e.printStackTrace();
+                // If block is to be apple: Change position of target to that specified,
+                // with a new Point as the maze-environment may still be displaying the old one
+                if (x != finishX || y != finishY) {
+                    finishX = x;
+                    finishY = y;
+                    bridge.setFinish(new Point(x, y));
                 }
                 break;
             case EMPTY:
                 // If block is to be empty: Change square at position to PASSAGE
-                maze.setCellType((int)position.getX(), (int)position.getY(), Maze.PASSAGE);
+                frame[x][y] = Maze.PASSAGE;
+                dirtyColumns[x >>> 6] |= 1L << x;
                 break;
             case SNAKE:
-                // If block is to be snake body: Change square at position to WALL
-                maze.setCellType((int)position.getX(), (int)position.getY(), Maze.WALL);
+            case WALL:
+                // If block is to be snake body or a wall of the level: Change square at position to WALL
+                frame[x][y] = Maze.WALL;
+                dirtyColumns[x >>> 6] |= 1L << x;
+                break;
+            case TELEPORT:
+                // If block is to be a teleporter: Change square at position to BEENBEFORE
+                frame[x][y] = Maze.BEENBEFORE;
+                dirtyColumns[x >>> 6] |= 1L << x;
         }
     }
 
     /**
      * Triggers update of Maze display with the updates made during the current
-     * poll, by broadcasting an Event, that triggers the Maze-Environment to
+     * poll, by copying the changed columns of the frame buffer into the grid 
+     * of the maze and broadcasting an Event, that triggers the Maze-Environment to
      * to refresh the display of Maze
      */
     private void update() {
+        publish();
+
         // Trigger update of Maze display in Maze Environment 
         try {
             EventBus.broadcast(new Event(IEvent.NEW_MAZE, maze));
@@ -226,12 +352,50 @@ public class SnakeController{
     }
 
     /**
-     * Tirggers change of the speed of the game by altering the delay between
-     * poll calls. To ensure this is taken up by the maze-environment, an Event 
-     * is broadcasted that corresponds to the updating of the delay. 
+     * Copies the columns of the frame buffer drawn to since the last copy 
+     * into the grid of the maze, one array copy per column
+     */
+    private void publish() {
+        for (int i = 0; i < dirtyColumns.length; i++) {
+            long columns = dirtyColumns[i];
+            while (columns != 0) {
+                int x = (i << 6) + Long.numberOfTrailingZeros(columns);
+                // Bits past the last column are set when the whole frame is cleared
+                if (x < frame.length) System.arraycopy(frame[x], 0, grid[x], 0, frame[x].length);
+                columns &= columns - 1;
+            }
+            dirtyColumns[i] = 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Records the delay between polls asked for by the game framework, which 
+     * only calls this when the delay changes (or the game is reset). It may 
+     * be called from the logic thread, so nothing is passed to the 
+     * maze-environment here: the next poll does that in applyDelay().
      */
+    @Override
     public void updateDelay(int delay) {
+        // Only the thread updating the game writes this, so the count needs no atomic update
+        requestedDelay = (((requestedDelay >>> 32) + 1) << 32) | (delay & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Tirggers change of the speed of the game by altering the delay between
+     * poll calls, if the game has asked for a new delay since the last poll. 
+     * To ensure this is taken up by the maze-environment, an Event is 
+     * broadcasted that corresponds to the updating of the delay. Runs on the 
+     * polling thread, like every other call into the maze-environment.
+     */
+    private void applyDelay() {
+        long requested = requestedDelay;
+        if (requested == appliedDelay) return;
+        appliedDelay = requested;
+
         // Trigger update of delay between poll calls to controlRobot
+        int delay = (int) requested;
+        metrics.setRequestedDelay(delay);
         try {
             EventBus.broadcast(new Event(IEvent.DELAY, Integer.valueOf(delay)));
         } catch (Exception e) {
@@ -240,32 +404,26 @@ public class SnakeController{
     }
 
     /**
-     * Changes thle value of static final field corresponding to the colour of 
-     * the square type, specified in the arguments, in the MazeGridPane class, 
-     * by using reflection and the unsafe class.
-     * 
-     * @param field String - name of field to be changed
-     * @param coloor Color object - colour to change the square background to
+     * Prints the timings recorded for each phase of a poll so far, and the 
+     * time taken by each decision of the autopilot if it is on
      */
-    private static void setBGColor(String field, Color colour) throws Exception {
-        final Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
-        unsafeField.setAccessible(true);
-        final Unsafe unsafe = (Unsafe) unsafeField.get(null);
-        final Field ourField = MazeGridPanel.class.getDeclaredField(field);
-        final Object staticFieldBase = unsafe.staticFieldBase(ourField);
-        final long staticFieldOffset = unsafe.staticFieldOffset(ourField);
-        unsafe.putObject(staticFieldBase, staticFieldOffset, colour);
+    public void dumpMetrics() {
+        metrics.dump(System.out);
+        AutopilotBot autopilot = gameFrame.getAutopilot();
+        if (autopilot != null) autopilot.getLatency().print(System.out, "autopilot");
     }
-    
+
     /**
      * Method called when controller is reset through the maze-environment UI
      * Resets the game framework and thereby the snake game for a new game and 
      * also reset the speed of the snake (i.e. the delay between polls)
      */
     public void reset() {
-        // Reset poll counter and game state
+        // Reset poll counter and game state, which also resets the delay. This
+        // runs on the maze-environment UI thread, so the game is asked to reset
+        // itself on its next update, by the polling or logic thread, through
+        // the input queue that keyboard input from this thread also goes into
         polls = 1;
-        updateDelay(250);
-        gameFrame.reset();
+        gameFrame.requestReset();
     }
 }
\ No newline at end of file
@@ -0,0 +1,656 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class for representing the state of a Snake game compactly, so that search
+ * based bots can copy it, make moves, undo them and hash it cheaply. The body
+ * is held as the cells of the head and tail and a ring of links between
+ * consecutive body parts, each link being the 2-bit Direction moved from the
+ * older part to the newer one. Links that are not a single move (body parts
+ * stacked at the start of a game, or the jump of a teleport) are kept in a
+ * short list of exceptions instead. An occupancy bitset answers collision
+ * checks, and a Zobrist hash of the occupied cells, head, tail, apple and
+ * direction is updated with a few XORs per move.
+ * Moves follow the rules of Snake.update(), except that what happens after
+ * eating the apple or reaching the robot depends on the random generator of
+ * the game: the apple is then unknown, and a move onto the robot is reported
+ * as a teleport for the caller to undo or stop at.
+ * Private Board board - size of the board and hash keys, shared between states
+ * Private int headCell, tailCell - packed cells of the head and tail
+ * Private int length - number of body parts
+ * Private int apple - packed cell of the apple, or NONE if not known
+ * Private int direction - ordinal of the direction of the last move
+ * Private boolean alive, gameOver, won - status of the game, as in Snake
+ * Private long[] links - ring of 2-bit links, 32 to a long
+ * Private int linkMask - number of links the ring holds minus one
+ * Private int headLink, tailLink - ring positions after the newest link and
+ * of the oldest link
+ * Private int[] exceptionSlots, exceptionFrom, exceptionTo - ring position and
+ * the cells of the older and newer body parts of each link that is not a move
+ * Private int exceptions - number of exceptions
+ * Private long[] occupied - bitset over the cells covered by the snake
+ * Private int occupiedCount - number of cells covered by the snake
+ * Private long hash - Zobrist hash of the state
+ * Private long[] undoRecords, undoHashes - what each move changed, packed by
+ * move(), and the hash before it
+ * Private int depth - number of moves that can be undone
+ */
+public class SnakeState {
+
+    /**
+     * Size of a board, and the random keys hashed for each cell of it. Keys
+     * are made from a fixed seed, so states of boards of the same size hash
+     * the same way and can be compared by hash.
+     * Private int width, height, cells, robot - as in Snake
+     * Private long[] occupiedKeys, headKeys, tailKeys, appleKeys - key of
+     * each cell when covered by the snake, when the head, when the tail and
+     * when the apple
+     * Private long[] directionKeys - key of each direction
+     */
+    private static class Board {
+        private static final ConcurrentHashMap<Long, Board> BOARDS = new ConcurrentHashMap<>();
+
+        private final int width;
+        private final int height;
+        private final int cells;
+        private final int robot;
+        private final long occupiedKeys[];
+        private final long headKeys[];
+        private final long tailKeys[];
+        private final long appleKeys[];
+        private final long directionKeys[];
+
+        /**
+         * Sole Constructor - Initialises the size of the board and its keys
+         * @param width int - number of columns on the board
+         * @param height int - number of rows on the board
+         */
+        private Board(int width, int height) {
+            this.width = width;
+            this.height = height;
+            cells = width * height;
+            robot = cells - 1;
+            SplittableRandom random = new SplittableRandom(0x5A0B215AL);
+            occupiedKeys = keys(random, cells);
+            headKeys = keys(random, cells);
+            tailKeys = keys(random, cells);
+            appleKeys = keys(random, cells);
+            directionKeys = keys(random, 4);
+        }
+
+        /**
+         * Draws the given number of random keys
+         * @param random SplittableRandom object - source of the keys
+         * @param count int - number of keys to draw
+         * @return long[] - the keys
+         */
+        private static long[] keys(SplittableRandom random, int count) {
+            long keys[] = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextLong();
+            }
+            return keys;
+        }
+
+        /**
+         * Finds the board of the given size, creating it the first time
+         * @param width int - number of columns on the board
+         * @param height int - number of rows on the board
+         * @return Board object - board shared by every state of that size
+         */
+        private static Board of(int width, int height) {
+            return BOARDS.computeIfAbsent(((long) width << 32) | height, size -> new Board(width, height));
+        }
+    }
+
+    // Outcomes of a move
+    public static final int MOVED = 0;
+    public static final int ATE = 1;
+    public static final int DIED = 2;
+    public static final int WON = 3;
+    public static final int TELEPORTED = 4;
+    // Apple cell when the apple is not known
+    public static final int NONE = -1;
+
+    private static final int NORTH = 0, EAST = 1, SOUTH = 2, WEST = 3;
+    private static final Snake.Direction DIRECTIONS[] = Snake.Direction.values();
+
+    private Board board;
+    private int headCell;
+    private int tailCell;
+    private int length;
+    private int apple;
+    private int direction;
+    private boolean alive;
+    private boolean gameOver;
+    private boolean won;
+    private long links[];
+    private int linkMask;
+    private int headLink;
+    private int tailLink;
+    private int exceptionSlots[];
+    private int exceptionFrom[];
+    private int exceptionTo[];
+    private int exceptions;
+    private long occupied[];
+    private int occupiedCount;
+    private long hash;
+    private long undoRecords[];
+    private long undoHashes[];
+    private int depth;
+
+    /**
+     * Constructor - Initialises the state from the current state of the given
+     * game
+     * @param snake Snake object - game to take the state of
+     * @throws IllegalArgumentException if the game is not on the open level
+     */
+    public SnakeState(Snake snake) {
+        load(snake);
+    }
+
+    /**
+     * Constructor - Initialises the state as a copy of another state, without
+     * the moves that can be undone
+     * @param other SnakeState object - state to copy
+     */
+    public SnakeState(SnakeState other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Sets this state to the current state of the given game, reusing its
+     * arrays where they are big enough
+     * @param snake Snake object - game to take the state of
+     * @throws IllegalArgumentException if the game is not on the open level
+     * of its size, as walls, edges that do not wrap and other teleporters
+     * are not modelled
+     */
+    public void load(Snake snake) {
+        if (!snake.getLevel().isOpen()) {
+            throw new IllegalArgumentException("SnakeState only models the open level, not a "
+                + snake.getWidth() + "x" + snake.getHeight() + " level with walls or teleporters");
+        }
+        setBoard(Board.of(snake.getWidth(), snake.getHeight()));
+        length = snake.getLength();
+        headCell = snake.getBodyCell(0);
+        tailCell = snake.getBodyCell(length - 1);
+        apple = snake.getAppleCell();
+        direction = snake.getDirection().ordinal();
+        alive = snake.isAlive();
+        gameOver = snake.isGameOver();
+        won = snake.isWon();
+
+        // Links from the tail forwards, so that the ring starts at position 0
+        Arrays.fill(occupied, 0L);
+        occupiedCount = 0;
+        exceptions = 0;
+        tailLink = 0;
+        headLink = 0;
+        setOccupied(tailCell);
+        for (int i = length - 1; i > 0; i--) {
+            int from = snake.getBodyCell(i);
+            int to = snake.getBodyCell(i - 1);
+            int move = moveBetween(from, to);
+            if (move < 0) {
+                addException(headLink, from, to);
+                move = 0;
+            }
+            setLink(headLink, move);
+            headLink = (headLink + 1) & linkMask;
+            setOccupied(to);
+        }
+        depth = 0;
+        hash = computeHash();
+    }
+
+    /**
+     * Sets this state to a copy of another state, reusing its arrays where
+     * they are big enough. Moves of the other state cannot be undone on this
+     * state.
+     * @param other SnakeState object - state to copy
+     */
+    public void copyFrom(SnakeState other) {
+        setBoard(other.board);
+        headCell = other.headCell;
+        tailCell = other.tailCell;
+        length = other.length;
+        apple = other.apple;
+        direction = other.direction;
+        alive = other.alive;
+        gameOver = other.gameOver;
+        won = other.won;
+        System.arraycopy(other.links, 0, links, 0, links.length);
+        headLink = other.headLink;
+        tailLink = other.tailLink;
+        exceptions = 0;
+        for (int i = 0; i < other.exceptions; i++) {
+            addException(other.exceptionSlots[i], other.exceptionFrom[i], other.exceptionTo[i]);
+        }
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        occupiedCount = other.occupiedCount;
+        hash = other.hash;
+        depth = 0;
+    }
+
+    /**
+     * Makes a copy of this state
+     * @return SnakeState object - a new state equal to this one
+     */
+    public SnakeState copy() {
+        return new SnakeState(this);
+    }
+
+    /**
+     * Accessor for the width of the board
+     * @return int - number of columns on the board
+     */
+    public int getWidth() { return board.width; }
+
+    /**
+     * Accessor for the height of the board
+     * @return int - number of rows on the board
+     */
+    public int getHeight() { return board.height; }
+
+    /**
+     * Accessor for private class variable headCell
+     * @return int - packed cell of the head of the snake
+     */
+    public int getHead() { return headCell; }
+
+    /**
+     * Accessor for private class variable tailCell
+     * @return int - packed cell of the tail of the snake
+     */
+    public int getTail() { return tailCell; }
+
+    /**
+     * Accessor for private class variable length
+     * @return int - number of body parts of the snake
+     */
+    public int getLength() { return length; }
+
+    /**
+     * Accessor for private class variable apple
+     * @return int - packed cell of the apple, or NONE once it has been eaten
+     */
+    public int getApple() { return apple; }
+
+    /**
+     * Accessor for private class variable direction
+     * @return Direction ENUM - direction of the last move
+     */
+    public Snake.Direction getDirection() { return DIRECTIONS[direction]; }
+
+    /**
+     * Accessor for private class variable alive
+     * @return boolean - whether the snake is alive or not
+     */
+    public boolean isAlive() { return alive; }
+
+    /**
+     * Accessor for private class variable gameOver
+     * @return boolean - whether the game is over or not
+     */
+    public boolean isGameOver() { return gameOver; }
+
+    /**
+     * Accessor for private class variable won
+     * @return boolean - whether the snake has filled the whole board or not
+     */
+    public boolean isWon() { return won; }
+
+    /**
+     * Accessor for private class variable hash
+     * @return long - Zobrist hash of the occupied cells, head, tail, apple and
+     * direction
+     */
+    public long getHash() { return hash; }
+
+    /**
+     * Accessor for private class variable depth
+     * @return int - number of moves that can be undone
+     */
+    public int getDepth() { return depth; }
+
+    /**
+     * Checks whether the given cell is covered by the snake body
+     * @param cell int - packed cell index (y * width + x)
+     * @return boolean - true if cell is covered by the snake, else false
+     */
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Finds the cell next to the given one in the given direction, wrapping
+     * around the edges of the board
+     * @param cell int - packed cell index (y * width + x)
+     * @param d Direction ENUM - direction to move in
+     * @return int - packed cell index of the neighbouring cell
+     */
+    public int neighbour(int cell, Snake.Direction d) {
+        return step(cell, d.ordinal());
+    }
+
+    /**
+     * Writes the cells of the snake body into the given array, head first
+     * @param body int[] - array of at least getLength() cells to fill
+     */
+    public void getBody(int[] body) {
+        int cell = headCell;
+        int slot = headLink;
+        body[0] = cell;
+        for (int i = 1; i < length; i++) {
+            slot = (slot - 1) & linkMask;
+            int e = findException(slot);
+            cell = (e >= 0) ? exceptionFrom[e] : step(cell, getLink(slot) ^ 2);
+            body[i] = cell;
+        }
+    }
+
+    /**
+     * Moves the snake one cell in the given direction, as Snake.update()
+     * would after Snake.setDirection(d): a direction opposite to the last
+     * move is ignored and the snake carries on instead. The move can be
+     * undone with undo().
+     * @param d Direction ENUM - direction to move in
+     * @return int - outcome of the move: MOVED, ATE, DIED, WON or TELEPORTED
+     * @throws IllegalStateException if the game is not in progress
+     */
+    public int move(Snake.Direction d) {
+        if (!alive) throw new IllegalStateException("Snake is not alive");
+        if (depth == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, depth * 2);
+            undoHashes = Arrays.copyOf(undoHashes, depth * 2);
+        }
+        long record = tailCell | (long) (apple + 1) << 26 | (long) direction << 53 | 1L << 55
+            | (gameOver ? 1L << 56 : 0) | (won ? 1L << 57 : 0);
+        undoHashes[depth] = hash;
+
+        int move = d.ordinal();
+        if (move == (direction ^ 2)) move = direction;
+        hash ^= board.directionKeys[direction] ^ board.directionKeys[move];
+        direction = move;
+
+        // Move the head forwards along a new link
+        int oldTail = tailCell;
+        int newHead = step(headCell, move);
+        setLink(headLink, move);
+        headLink = (headLink + 1) & linkMask;
+        hash ^= board.headKeys[headCell] ^ board.headKeys[newHead];
+        headCell = newHead;
+
+        // Bitten itself if the head moves onto the body, including the cell
+        // that the tail is about to leave
+        int outcome = MOVED;
+        if (isOccupied(newHead)) {
+            alive = false;
+            gameOver = true;
+            outcome = DIED;
+        } else {
+            setOccupied(newHead);
+            hash ^= board.occupiedKeys[newHead];
+            record |= 1L << 63;
+        }
+
+        if (newHead == apple) {
+            // Grow by leaving the tail where it is; the next apple is random
+            length++;
+            hash ^= board.appleKeys[apple];
+            apple = NONE;
+            record |= 1L << 58;
+            if (board.cells - occupiedCount - (isOccupied(board.robot) ? 0 : 1) == 0) {
+                won = true;
+                alive = false;
+                gameOver = true;
+                outcome = WON;
+            } else if (outcome == MOVED) {
+                outcome = ATE;
+            }
+        } else {
+            // Move the tail forwards along the oldest link
+            int link = getLink(tailLink);
+            int e = findException(tailLink);
+            record |= (long) link << 59;
+            if (e >= 0) {
+                tailCell = exceptionTo[e];
+                removeException(e);
+                record |= 1L << 61;
+            } else {
+                tailCell = step(oldTail, link);
+            }
+            tailLink = (tailLink + 1) & linkMask;
+            hash ^= board.tailKeys[oldTail] ^ board.tailKeys[tailCell];
+            if (tailCell != oldTail && newHead != oldTail) {
+                clearOccupied(oldTail);
+                hash ^= board.occupiedKeys[oldTail];
+                record |= 1L << 62;
+            }
+        }
+
+        if (newHead == board.robot && outcome != DIED) outcome = TELEPORTED;
+        undoRecords[depth++] = record;
+        return outcome;
+    }
+
+    /**
+     * Undoes the last move made with move() that has not been undone
+     * @throws IllegalStateException if there is no move to undo
+     */
+    public void undo() {
+        if (depth == 0) throw new IllegalStateException("No move to undo");
+        long record = undoRecords[--depth];
+        hash = undoHashes[depth];
+
+        int moved = direction;
+        direction = (int) (record >>> 53) & 3;
+        alive = (record & 1L << 55) != 0;
+        gameOver = (record & 1L << 56) != 0;
+        won = (record & 1L << 57) != 0;
+        apple = (int) ((record >>> 26) & ((1L << 27) - 1)) - 1;
+
+        if ((record & 1L << 58) != 0) {
+            length--;
+        } else {
+            // Move the tail back along the link it left
+            int oldTail = (int) (record & ((1L << 26) - 1));
+            tailLink = (tailLink - 1) & linkMask;
+            setLink(tailLink, (int) (record >>> 59) & 3);
+            if ((record & 1L << 61) != 0) addException(tailLink, oldTail, tailCell);
+            if ((record & 1L << 62) != 0) setOccupied(oldTail);
+            tailCell = oldTail;
+        }
+
+        // Move the head back along the newest link
+        if ((record & 1L << 63) != 0) clearOccupied(headCell);
+        headLink = (headLink - 1) & linkMask;
+        headCell = step(headCell, moved ^ 2);
+    }
+
+    /**
+     * {@inheritDoc}
+     * States are equal when their snakes cover the same cells in the same
+     * order, with the same apple, direction and status.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SnakeState)) return false;
+        SnakeState other = (SnakeState) o;
+        if (hash != other.hash || board != other.board || length != other.length || apple != other.apple
+            || direction != other.direction || alive != other.alive || gameOver != other.gameOver
+            || won != other.won || !Arrays.equals(occupied, other.occupied)) return false;
+
+        int body[] = new int[length];
+        int otherBody[] = new int[length];
+        getBody(body);
+        other.getBody(otherBody);
+        return Arrays.equals(body, otherBody);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Switches the state to the given board, replacing any arrays that are
+     * too small for it
+     * @param board Board object - board of the state
+     */
+    private void setBoard(Board board) {
+        if (this.board != board) {
+            this.board = board;
+            int size = Integer.highestOneBit(Math.max(32, board.cells - 1) * 2 - 1);
+            linkMask = size - 1;
+            links = new long[size >>> 5];
+            occupied = new long[(board.cells + 63) >>> 6];
+        }
+        if (exceptionSlots == null) {
+            exceptionSlots = new int[8];
+            exceptionFrom = new int[8];
+            exceptionTo = new int[8];
+            undoRecords = new long[64];
+            undoHashes = new long[64];
+        }
+    }
+
+    /**
+     * Finds the cell next to the given one in the direction with the given
+     * ordinal, wrapping around the edges of the board
+     * @param cell int - packed cell index (y * width + x)
+     * @param move int - ordinal of the direction
+     * @return int - packed cell index of the neighbouring cell
+     */
+    private int step(int cell, int move) {
+        int width = board.width;
+        switch (move) {
+            case NORTH:
+                return (cell < width) ? cell + board.cells - width : cell - width;
+            case SOUTH:
+                return (cell >= board.cells - width) ? cell + width - board.cells : cell + width;
+            case WEST:
+                return (cell % width == 0) ? cell + width - 1 : cell - 1;
+            default:
+                return (cell % width == width - 1) ? cell - width + 1 : cell + 1;
+        }
+    }
+
+    /**
+     * Finds the direction of a single move between two cells
+     * @param from int - packed cell moved from
+     * @param to int - packed cell moved to
+     * @return int - ordinal of the direction, or -1 if the cells are not neighbours
+     */
+    private int moveBetween(int from, int to) {
+        for (int move = 0; move < 4; move++) {
+            if (step(from, move) == to) return move;
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the hash of the state from scratch
+     * @return long - Zobrist hash of the occupied cells, head, tail, apple and
+     * direction
+     */
+    private long computeHash() {
+        long h = board.headKeys[headCell] ^ board.tailKeys[tailCell] ^ board.directionKeys[direction];
+        if (apple != NONE) h ^= board.appleKeys[apple];
+        for (int i = 0; i < occupied.length; i++) {
+            long bits = occupied[i];
+            while (bits != 0) {
+                h ^= board.occupiedKeys[(i << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Accessor for a link in the ring
+     * @param slot int - ring position of the link
+     * @return int - ordinal of the direction of the link
+     */
+    private int getLink(int slot) {
+        return (int) (links[slot >>> 5] >>> ((slot & 31) << 1)) & 3;
+    }
+
+    /**
+     * Mutator for a link in the ring
+     * @param slot int - ring position of the link
+     * @param move int - ordinal of the direction of the link
+     */
+    private void setLink(int slot, int move) {
+        int shift = (slot & 31) << 1;
+        links[slot >>> 5] = (links[slot >>> 5] & ~(3L << shift)) | (long) move << shift;
+    }
+
+    /**
+     * Finds the exception for the link at the given ring position
+     * @param slot int - ring position of the link
+     * @return int - index of the exception, or -1 if the link is a move
+     */
+    private int findException(int slot) {
+        for (int i = 0; i < exceptions; i++) {
+            if (exceptionSlots[i] == slot) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Records that the link at the given ring position is not a single move
+     * @param slot int - ring position of the link
+     * @param from int - packed cell of the older body part
+     * @param to int - packed cell of the newer body part
+     */
+    private void addException(int slot, int from, int to) {
+        if (exceptions == exceptionSlots.length) {
+            exceptionSlots = Arrays.copyOf(exceptionSlots, exceptions * 2);
+            exceptionFrom = Arrays.copyOf(exceptionFrom, exceptions * 2);
+            exceptionTo = Arrays.copyOf(exceptionTo, exceptions * 2);
+        }
+        exceptionSlots[exceptions] = slot;
+        exceptionFrom[exceptions] = from;
+        exceptionTo[exceptions] = to;
+        exceptions++;
+    }
+
+    /**
+     * Forgets an exception once its link has left the ring
+     * @param i int - index of the exception
+     */
+    private void removeException(int i) {
+        exceptions--;
+        exceptionSlots[i] = exceptionSlots[exceptions];
+        exceptionFrom[i] = exceptionFrom[exceptions];
+        exceptionTo[i] = exceptionTo[exceptions];
+    }
+
+    /**
+     * Marks the given cell as covered by the snake body
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void setOccupied(int cell) {
+        long bit = 1L << cell;
+        if ((occupied[cell >>> 6] & bit) == 0) {
+            occupied[cell >>> 6] |= bit;
+            occupiedCount++;
+        }
+    }
+
+    /**
+     * Marks the given cell as no longer covered by the snake body
+     * @param cell int - packed cell index (y * width + x)
+     */
+    private void clearOccupied(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        occupiedCount--;
+    }
+}
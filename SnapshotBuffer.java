@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class for handing snapshots of the game from the thread updating it to the
+ * thread displaying it, without either ever waiting for the other. Three
+ * snapshots are allocated up front: the writer fills the back one, the reader
+ * draws the front one, and the third is the latest complete snapshot waiting
+ * in the middle. Publishing swaps the back snapshot into the middle, and
+ * reading swaps the middle snapshot to the front if a newer one has been
+ * published since, each with a single atomic exchange. A snapshot is only
+ * ever touched by one thread at a time, so the reader can never see one
+ * half-written, and it always gets the latest complete one, skipping any
+ * published while it was busy.
+ * Private static int FRESH - flag in middle set when the middle snapshot has
+ * been published and not yet read
+ * Private static int INDEX - mask of the snapshot index in middle
+ * Private GameSnapshot[] snapshots - the three snapshots
+ * Private AtomicInteger middle - index of the middle snapshot, with FRESH
+ * Private int back - index of the snapshot owned by the writer
+ * Private int front - index of the snapshot owned by the reader
+ */
+public class SnapshotBuffer {
+
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private GameSnapshot snapshots[];
+    private AtomicInteger middle;
+    private int back;
+    private int front;
+
+    /**
+     * Sole Constructor - Allocates three empty snapshots of a board of the
+     * given size
+     * @param width int - number of columns on the board
+     * @param height int - number of rows on the board
+     */
+    public SnapshotBuffer(int width, int height) {
+        snapshots = new GameSnapshot[] {
+            new GameSnapshot(width, height), new GameSnapshot(width, height), new GameSnapshot(width, height)
+        };
+        front = 0;
+        middle = new AtomicInteger(1);
+        back = 2;
+    }
+
+    /**
+     * Accessor for the snapshot owned by the writer. Called only by the
+     * writing thread.
+     * @return GameSnapshot object - snapshot to fill in before publish()
+     */
+    public GameSnapshot getBack() { return snapshots[back]; }
+
+    /**
+     * Makes the back snapshot the latest one for the reader, and takes the
+     * middle one as the next to fill in. Called only by the writing thread.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * Finds the latest complete snapshot, which stays the reader's until the
+     * next call. Called only by the reading thread.
+     * @return GameSnapshot object - latest snapshot published (empty if none
+     * has been yet)
+     */
+    public GameSnapshot getLatest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return snapshots[front];
+    }
+}
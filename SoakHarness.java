@@ -0,0 +1,382 @@
+import java.awt.Color;
+import java.awt.event.KeyEvent;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.swing.JPanel;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import uk.ac.warwick.dcs.maze.gui.MazeGridPanel;
+import uk.ac.warwick.dcs.maze.logic.*;
+
+/**
+ * Class for soak testing the whole game as the maze-environment runs it:
+ * a SnakeController is polled through controlRobot() at the fastest delay
+ * (back to back, unless a delay is given) for as long as asked, by the
+ * stand-ins for the maze-environment in stubs/, with scripted key presses in
+ * place of a player (-Dsoak.script=keys, pressed one every
+ * -Dsoak.keyMillis=n). Without a script, WASD are pressed at random and
+ * every other game is played by the autopilot, so the snake also grows long
+ * and fast. Key presses are passed straight to the game framework, as the
+ * harness runs without a display; a new game is started whenever the last
+ * one has ended. The harness reports, every interval and at the end:
+ * - the latency of each poll, as percentiles
+ * - garbage collection pauses, from the notifications of each collector,
+ *   which time them to the millisecond
+ * - the growth of the heap, measured after a full collection at the end of
+ *   the warm-up and again at the end of the run
+ * - the number of events of each message broadcast to the environment
+ * The run fails (exit status 1) if the robot was not set up as the game
+ * needs, or if the 99.9th percentile poll latency or the growth of the heap
+ * goes over the limits given with -Dsoak.maxPollMicros=n and
+ * -Dsoak.maxHeapGrowthKB=n, so it can be run unattended (e.g. in CI). The
+ * game's own options (-Dsnake.logicThread=true, -Dsnake.level=file, ...)
+ * apply as they do in the maze-environment.
+ * Private static long RESTART_DELAY - shortest time between presses of space
+ * to start a new game, longer than the slowest update of the game so a
+ * press is never made again before the last one has been taken up
+ * Private static String KEYS - keys pressed at random when no script is given
+ * Private SnakeController controller - controller being soaked
+ * Private RobotImpl robot - stand-in robot the controller is polled with
+ * Private JPanel source - component the key events are sent from
+ * Private String script - keys to press in turn (a letter for its key, a space
+ * for the space bar, '.' for no key), or null to press keys at random
+ * Private Random random - source of the keys pressed when there is no script
+ * Private long keyInterval - time between key presses, in nanoseconds
+ * Private long delay - time to wait between polls, in nanoseconds
+ * Private long polls, keys, games - polls made, keys pressed and games started
+ * Private long bestScore - highest score seen
+ * Private boolean alive - whether the game was being played at the last poll
+ * Private boolean autopilot - whether the harness has switched the autopilot
+ * on, in which case no keys are pressed at random, as a key pressed during an
+ * update takes the place of the autopilot's move
+ * Private int scripted - index in script of the next key to press
+ * Private long nextKey - time at which the next key is to be pressed
+ * Private long lastStart - time at which space was last pressed to start a game
+ * Private LatencyHistogram pollLatency - latency of every poll measured
+ * Private LatencyHistogram intervalLatency - latency of the polls since the
+ * last report
+ * Private LatencyHistogram gcPauses - pauses of collections while measuring
+ * Private long intervalGcs - number of pauses since the last report
+ * Private long intervalPause - total pause time since the last report
+ * Private long heapAfterGc - heap used after the last collection
+ * Private Set heapPools - names of the memory pools that make up the heap
+ * Private boolean measuring - whether collections are being recorded
+ */
+public class SoakHarness implements NotificationListener {
+
+    private static final long RESTART_DELAY = 1_000_000_000L;
+    private static final String KEYS = "WASD";
+
+    private SnakeController controller;
+    private RobotImpl robot;
+    private JPanel source;
+    private String script;
+    private Random random;
+    private long keyInterval;
+    private long delay;
+    private long polls;
+    private long keys;
+    private long games;
+    private long bestScore;
+    private boolean alive;
+    private boolean autopilot;
+    private int scripted;
+    private long nextKey;
+    private long lastStart;
+    private LatencyHistogram pollLatency;
+    private LatencyHistogram intervalLatency;
+    private LatencyHistogram gcPauses;
+    private long intervalGcs;
+    private long intervalPause;
+    private long heapAfterGc;
+    private Set<String> heapPools;
+    private volatile boolean measuring;
+
+    /**
+     * Sole Constructor - Creates the stand-in maze and robot and the
+     * controller to soak, and starts listening for garbage collections
+     * @param script String - keys to press in turn, or null to press keys at random
+     * @param seed long - seed of the keys pressed at random
+     * @param keyInterval long - time between key presses, in nanoseconds
+     * @param delay long - time to wait between polls, in nanoseconds
+     */
+    public SoakHarness(String script, long seed, long keyInterval, long delay) {
+        robot = new RobotImpl(new Maze(15, 15));
+        controller = new SnakeController();
+        source = new JPanel();
+        this.script = (script == null || script.isEmpty()) ? null : script;
+        random = new Random(seed);
+        this.keyInterval = keyInterval;
+        this.delay = delay;
+        lastStart = Long.MIN_VALUE / 2;
+        pollLatency = new LatencyHistogram();
+        intervalLatency = new LatencyHistogram();
+        gcPauses = new LatencyHistogram();
+
+        heapPools = new HashSet<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) heapPools.add(pool.getName());
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    /**
+     * Runs the soak: polls without measuring during the warm-up, collects the
+     * heap, then polls for the rest of the run measuring every poll, printing
+     * a line of report every interval and a summary at the end
+     * @param duration long - length of the run, in nanoseconds
+     * @param warmup long - length of the warm-up, in nanoseconds
+     * @param interval long - time between reports, in nanoseconds
+     * @param out PrintStream object - stream to report to
+     * @return long - growth of the heap over the measured run, in bytes
+     */
+    public long run(long duration, long warmup, long interval, PrintStream out) {
+        long start = System.nanoTime();
+        poll(start + warmup, interval, false, out);
+
+        // Collect everything left over from the warm-up before measuring
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        measuring = true;
+
+        long measured = System.nanoTime();
+        poll(start + duration, interval, true, out);
+        measuring = false;
+
+        memory.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        summarise((System.nanoTime() - measured) / 1e9, heapBefore, heapAfter, out);
+        return heapAfter - heapBefore;
+    }
+
+    /**
+     * Polls the controller until the given time, pressing keys as scripted
+     * @param end long - time to stop polling at, from System.nanoTime()
+     * @param interval long - time between reports, in nanoseconds
+     * @param measure boolean - whether to record the latency of each poll and
+     * report every interval
+     * @param out PrintStream object - stream to report to
+     */
+    private void poll(long end, long interval, boolean measure, PrintStream out) {
+        long from = System.nanoTime();
+        long nextReport = from + interval;
+        long now = from;
+        while (now < end) {
+            press(now);
+
+            controller.controlRobot(robot);
+            long taken = System.nanoTime() - now;
+            polls++;
+            if (measure) {
+                pollLatency.record(taken);
+                intervalLatency.record(taken);
+            }
+
+            if (delay > 0) LockSupport.parkNanos(delay);
+            now = System.nanoTime();
+            if (measure && now >= nextReport) {
+                report((now - from) / 1_000_000_000L, out);
+                nextReport += interval;
+            }
+        }
+    }
+
+    /**
+     * Presses the keys due before a poll: space to start a new game if the
+     * last one has ended (with P before it when there is no script, so every
+     * other game is played by the autopilot), otherwise the next key of the
+     * script when it is due, or a random key if the autopilot is not playing
+     * @param now long - current time, from System.nanoTime()
+     */
+    private void press(long now) {
+        long status = controller.getStatus();
+        boolean playing = StatusPanel.isAlive(status);
+        if (playing && !alive) games++;
+        alive = playing;
+        bestScore = Math.max(bestScore, StatusPanel.getScore(status));
+
+        if (!alive) {
+            if (now - lastStart >= RESTART_DELAY) {
+                // Without a script, switch the autopilot on or off for each game, so long games are played too
+                if (script == null) {
+                    press(KeyEvent.VK_P);
+                    autopilot = !autopilot;
+                }
+                press(KeyEvent.VK_SPACE);
+                lastStart = now;
+            }
+        } else if (now >= nextKey && !(script == null && autopilot)) {
+            nextKey = now + keyInterval;
+            char key;
+            if (script != null) {
+                key = script.charAt(scripted);
+                scripted = (scripted + 1) % script.length();
+            } else {
+                key = KEYS.charAt(random.nextInt(KEYS.length()));
+            }
+            if (key != '.') press(Character.toUpperCase(key));
+        }
+    }
+
+    /**
+     * Passes a key press to the game framework, as the Input Window would
+     * @param code int - key code of the key, e.g. KeyEvent.VK_W
+     */
+    private void press(int code) {
+        controller.getGameFrame().keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED,
+            System.currentTimeMillis(), 0, code, KeyEvent.CHAR_UNDEFINED));
+        keys++;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Records the pause of each garbage collection made while measuring, and
+     * the heap used after every collection. Collections asked for by the
+     * harness itself and the cycles of concurrent collectors, which do not
+     * pause the game, are not counted as pauses. Runs on a thread of the
+     * management framework.
+     */
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) used += pool.getValue().getUsed();
+        }
+        boolean pause = measuring && !"System.gc()".equals(info.getGcCause())
+            && !info.getGcName().contains("Cycles") && !info.getGcName().contains("Concurrent");
+
+        synchronized (this) {
+            heapAfterGc = used;
+            if (pause) {
+                long duration = info.getGcInfo().getDuration() * 1_000_000L;
+                gcPauses.record(duration);
+                intervalGcs++;
+                intervalPause += duration;
+            }
+        }
+    }
+
+    /**
+     * Prints a line of report on the polls since the last report, and clears
+     * the latencies recorded for them
+     * @param seconds long - seconds since polling started
+     * @param out PrintStream object - stream to report to
+     */
+    private void report(long seconds, PrintStream out) {
+        long gcs, pause, heap;
+        synchronized (this) {
+            gcs = intervalGcs;
+            pause = intervalPause;
+            heap = heapAfterGc;
+            intervalGcs = 0;
+            intervalPause = 0;
+        }
+        out.printf("%6ds polls=%-10d p50=%7.1fus p99=%7.1fus p99.9=%7.1fus max=%8.1fus gc=%d/%dms heap=%.1fMB games=%d best=%d mazes=%d delays=%d%n",
+            seconds, polls, intervalLatency.getPercentile(0.5) / 1e3, intervalLatency.getPercentile(0.99) / 1e3,
+            intervalLatency.getPercentile(0.999) / 1e3, intervalLatency.getMax() / 1e3, gcs, pause / 1_000_000L,
+            heap / 1048576.0, games, bestScore, EventBus.getCount(IEvent.NEW_MAZE), EventBus.getCount(IEvent.DELAY));
+        intervalLatency.reset();
+    }
+
+    /**
+     * Prints the summary of the whole run
+     * @param seconds double - length of the measured run, in seconds
+     * @param heapBefore long - heap used after the collection before measuring
+     * @param heapAfter long - heap used after the collection at the end
+     * @param out PrintStream object - stream to report to
+     */
+    private void summarise(double seconds, long heapBefore, long heapAfter, PrintStream out) {
+        out.printf("measured %.0fs: %d polls (%.0f a second), %d keys pressed, %d games started, best score %d%n",
+            seconds, pollLatency.getCount(), pollLatency.getCount() / seconds, keys, games, bestScore);
+        pollLatency.print(out, "poll");
+        synchronized (this) {
+            gcPauses.print(out, "gc pause");
+        }
+        out.printf("heap after full collection: %.1fKB before, %.1fKB after, growth %+.1fKB%n",
+            heapBefore / 1024.0, heapAfter / 1024.0, (heapAfter - heapBefore) / 1024.0);
+        IEvent lastDelay = EventBus.getLast(IEvent.DELAY);
+        out.printf("events broadcast: NEW_MAZE=%d (one every %d polls) DELAY=%d (last %sms)%n",
+            EventBus.getCount(IEvent.NEW_MAZE), polls / Math.max(1, EventBus.getCount(IEvent.NEW_MAZE)),
+            EventBus.getCount(IEvent.DELAY), (lastDelay == null) ? "-" : lastDelay.getData());
+    }
+
+    /**
+     * Checks that the controller set up the stand-in environment as the game
+     * needs: robot deactivated, maze resized to the board and colours changed
+     * @return String - description of what was not set up, or null if all was
+     */
+    private String checkSetup() {
+        Level level = controller.getGameFrame().getSnake().getLevel();
+        Maze maze = robot.getMaze();
+        if (robot.isActive()) return "robot was not deactivated";
+        if (maze.getWidth() != level.getWidth() || maze.getHeight() != level.getHeight()) {
+            return "maze is " + maze.getWidth() + "x" + maze.getHeight() + ", expected "
+                + level.getWidth() + "x" + level.getHeight();
+        }
+        if (!new Color(251, 133, 0).equals(MazeGridPanel.getWallColour())) return "wall colour was not changed";
+        return null;
+    }
+
+    /**
+     * Soaks the controller for the given time, then exits with status 1 if
+     * the setup is wrong or a limit was exceeded
+     * @param args String[] - seconds to run for (3600 by default), seconds
+     * between reports (60 by default) and seed of the keys pressed (1 by default)
+     */
+    public static void main(String[] args) {
+        // There is no Input Window to show, whatever display is available
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+
+        long seconds = (args.length > 0) ? Long.parseLong(args[0]) : 3600;
+        long interval = (args.length > 1) ? Long.parseLong(args[1]) : 60;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1;
+        long keyInterval = Long.getLong("soak.keyMillis", 200) * 1_000_000L;
+        long delay = Long.getLong("soak.delayMicros", 0) * 1_000L;
+        long maxPoll = Long.getLong("soak.maxPollMicros", 0);
+        long maxGrowth = Long.getLong("soak.maxHeapGrowthKB", 0);
+        // Warm up for a tenth of the run, up to 30 seconds
+        long warmup = Math.min(30_000_000_000L, seconds * 100_000_000L);
+
+        SoakHarness harness = new SoakHarness(System.getProperty("soak.script"), seed, keyInterval, delay);
+        System.out.printf("soaking for %ds (warm-up %.1fs), reporting every %ds%n", seconds, warmup / 1e9, interval);
+        long growth = harness.run(seconds * 1_000_000_000L, warmup, interval * 1_000_000_000L, System.out);
+
+        String failure = harness.checkSetup();
+        if (failure == null && maxPoll > 0 && harness.pollLatency.getPercentile(0.999) > maxPoll * 1_000L) {
+            failure = "p99.9 poll latency over " + maxPoll + "us";
+        }
+        if (failure == null && maxGrowth > 0 && growth > maxGrowth * 1024L) {
+            failure = "heap grew by more than " + maxGrowth + "KB";
+        }
+        if (failure != null) {
+            System.out.println("FAIL: " + failure);
+            System.exit(1);
+        }
+        System.out.println("PASS");
+        System.exit(0);
+    }
+}
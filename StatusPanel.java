@@ -0,0 +1,156 @@
+import java.awt.Component;
+import java.awt.Font;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Class for displaying the status of the game in the Input Window. The text
+ * that never changes (title and instructions) is laid out once in labels of
+ * its own, and only the labels showing the outcome, the start/stop prompt and
+ * the score are changed, as plain text so nothing is parsed as HTML again.
+ * setStatus() is called on every poll from the thread updating the game, but only
+ * does anything when the score or the state of the game has changed, and
+ * hands the change to the Swing event thread, where any changes made before
+ * it gets round to them are applied together.
+ * Private JLabel result - shows whether the last game was won or lost
+ * Private JLabel prompt - tells the player whether space starts or stops a game
+ * Private JLabel score - shows the current score
+ * Private long shown - status last passed to the event thread, packed by pack()
+ * Private AtomicLong pending - latest status waiting to be displayed
+ * Private AtomicBoolean scheduled - whether the event thread has been asked to
+ * display the pending status and has not yet done so
+ */
+public class StatusPanel extends JPanel {
+
+    private static final long NONE = -1;
+    private static final int ALIVE = 1;
+    private static final int GAME_OVER = 2;
+    private static final int WON = 4;
+
+    private JLabel result;
+    private JLabel prompt;
+    private JLabel score;
+    private long shown;
+    private AtomicLong pending;
+    private AtomicBoolean scheduled;
+
+    /**
+     * Sole Default Constructor - Lays out the labels of the panel, with the
+     * title and instructions that never change
+     */
+    public StatusPanel() {
+        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+
+        JLabel title = new JLabel("Snake Game");
+        title.setFont(title.getFont().deriveFont(Font.PLAIN, 20f));
+        result = new JLabel(" ");
+        prompt = new JLabel(" ");
+        score = new JLabel(" ");
+
+        add(title);
+        add(Box.createVerticalStrut(12));
+        add(new JLabel("<html><center>Use WASD on this window to<br>control the snake.</center></html>"));
+        add(Box.createVerticalStrut(12));
+        add(result);
+        add(prompt);
+        add(Box.createVerticalStrut(12));
+        add(score);
+        add(Box.createVerticalStrut(12));
+        add(new JLabel("<html><center>Eat Green Squares and gain Points.<br>Blue Square randomly teleports Snake.</center></html>"));
+        for (Component component : getComponents()) {
+            ((JComponent) component).setAlignmentX(Component.CENTER_ALIGNMENT);
+        }
+
+        shown = NONE;
+        pending = new AtomicLong(NONE);
+        scheduled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Accessor for private class variable shown
+     * @return long - status last passed to the event thread, packed by 
+     * pack(), or -1 if none has been
+     */
+    public long getShown() { return shown; }
+
+    /**
+     * Checks whether a status packed by pack() is of a game being played
+     * @param status long - packed status of the game
+     * @return boolean - true if the snake is alive, else false
+     */
+    public static boolean isAlive(long status) {
+        return status != NONE && (status & ALIVE) != 0;
+    }
+
+    /**
+     * Returns the score held in a status packed by pack()
+     * @param status long - packed status of the game
+     * @return long - score of the game, or 0 if there is no status
+     */
+    public static long getScore(long status) {
+        return (status == NONE) ? 0 : status >> 3;
+    }
+
+    /**
+     * Displays the status of the given game, if it has changed since it was
+     * last shown. Can be called from any one thread other than the event
+     * thread, and costs a comparison when nothing has changed.
+     * @param snake Snake object - game whose status to display
+     */
+    public void setStatus(Snake snake) {
+        setStatus(pack(snake));
+    }
+
+    /**
+     * Displays a status packed by pack(), if it has changed since it was last
+     * shown, e.g. one taken from a GameSnapshot. Can be called from any one 
+     * thread other than the event thread.
+     * @param status long - packed status of the game
+     */
+    public void setStatus(long status) {
+        if (status == shown) return;
+        shown = status;
+
+        pending.set(status);
+        if (!scheduled.getAndSet(true)) {
+            SwingUtilities.invokeLater(this::apply);
+        }
+    }
+
+    /**
+     * Displays the latest pending status on the labels. Runs on the event
+     * thread.
+     */
+    private void apply() {
+        // Clear the flag first, so a status set after the read is scheduled again
+        scheduled.set(false);
+        long status = pending.get();
+        int flags = (int) status & 7;
+
+        result.setText(((flags & WON) != 0) ? "YOU WIN!" : ((flags & GAME_OVER) != 0) ? "GAME OVER!" : " ");
+        prompt.setText("Press space to " + (((flags & ALIVE) != 0) ? "stop" : "start") + ".");
+        score.setText("Score: " + (status >> 3));
+    }
+
+    /**
+     * Packs everything the panel displays about a game into a single value,
+     * so that changes can be detected and passed between threads atomically
+     * @param snake Snake object - game whose status to pack
+     * @return long - score in the upper bits, ALIVE, GAME_OVER and WON flags
+     * in the lowest 3 bits
+     */
+    static long pack(Snake snake) {
+        long status = (long) (snake.getLength() - 6) << 3;
+        if (snake.isAlive()) status |= ALIVE;
+        if (snake.isGameOver()) status |= GAME_OVER;
+        if (snake.isWon()) status |= WON;
+        return status;
+    }
+}
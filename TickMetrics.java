@@ -0,0 +1,107 @@
+import java.io.PrintStream;
+
+/**
+ * Class for recording how long each phase of a poll takes, and how far the 
+ * time between polls strays from the requested delay. Metrics are only 
+ * recorded when the JVM is started with -Dsnake.metrics=true; otherwise every
+ * method returns straight away and the JIT removes the calls entirely.
+ * Recorded metrics are printed on exit, or on demand with dump().
+ * enum Phase - phases of a poll that are timed
+ * Public static boolean ENABLED - whether metrics are being recorded
+ * Private LatencyHistogram[] phases - latency histogram for each phase
+ * Private LatencyHistogram jitter - deviation of poll interval from delay
+ * Private long lastPoll - time at which the previous poll started
+ * Private long requestedDelay - delay between polls requested, in nanoseconds
+ */
+public class TickMetrics {
+
+    /**
+     * Phases of a poll of the controller that are timed individually
+     */
+    enum Phase {
+        CLEAR, UPDATE, DRAW, DISPLAY, TEXT
+    }
+
+    public static final boolean ENABLED = Boolean.getBoolean("snake.metrics");
+
+    private LatencyHistogram phases[];
+    private LatencyHistogram jitter;
+    private long lastPoll;
+    private long requestedDelay;
+
+    /**
+     * Sole Default Constructor - Initialises a histogram for each phase and 
+     * for jitter, and registers the metrics to be printed on exit when enabled
+     */
+    public TickMetrics() {
+        phases = new LatencyHistogram[Phase.values().length];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+        jitter = new LatencyHistogram();
+
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(System.out)));
+        }
+    }
+
+    /**
+     * Marks the start of a poll, recording how far the time since the start of
+     * the previous poll differs from the requested delay
+     * @return long - current time in nanoseconds (0 when disabled)
+     */
+    public long startPoll() {
+        if (!ENABLED) return 0;
+        long now = System.nanoTime();
+        if (lastPoll != 0 && requestedDelay != 0) {
+            jitter.record(Math.abs((now - lastPoll) - requestedDelay));
+        }
+        lastPoll = now;
+        return now;
+    }
+
+    /**
+     * Marks the start of a phase
+     * @return long - current time in nanoseconds (0 when disabled)
+     */
+    public long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time taken by a phase that started at the given time
+     * @param phase Phase ENUM - phase that has finished
+     * @param start long - time at which the phase started
+     * @return long - current time in nanoseconds, for timing the next phase
+     */
+    public long record(Phase phase, long start) {
+        if (!ENABLED) return 0;
+        long now = System.nanoTime();
+        phases[phase.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Modifier for private class variable requestedDelay
+     * @param delay int - delay between polls requested, in milliseconds
+     */
+    public void setRequestedDelay(int delay) {
+        requestedDelay = delay * 1_000_000L;
+    }
+
+    /**
+     * Prints a summary of every phase and of the jitter between polls
+     * @param out PrintStream object - stream to print to
+     */
+    public void dump(PrintStream out) {
+        if (!ENABLED) {
+            out.println("Tick metrics disabled (run with -Dsnake.metrics=true)");
+            return;
+        }
+        out.println("Tick metrics:");
+        for (Phase phase : Phase.values()) {
+            phases[phase.ordinal()].print(out, phase.name().toLowerCase());
+        }
+        jitter.print(out, "jitter");
+    }
+}
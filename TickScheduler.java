@@ -0,0 +1,108 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class for scheduling updates of the game at a fixed timestep, measured with
+ * System.nanoTime, independently of how often it is asked. Ticks are due at
+ * exact multiples of the period from the start, so a late poll catches up by
+ * running several ticks rather than slowing the game, and polls further apart
+ * than the period (e.g. the maze-environment cannot poll faster than every few
+ * milliseconds) run as many ticks as have fallen due, allowing periods below
+ * the poll delay. A poll up to half a period early still runs the tick, so
+ * polls at the same rate as the period run exactly one tick each despite jitter.
+ * Private int maxCatchUp - most ticks run for a single poll; anything further
+ * behind is dropped rather than running the game in a burst
+ * Private long period - time between ticks, in nanoseconds
+ * Private long nextTick - time at which the next tick is due
+ * Private boolean started - whether nextTick has been set
+ */
+public class TickScheduler {
+
+    private final int maxCatchUp;
+    private long period;
+    private long nextTick;
+    private boolean started;
+
+    /**
+     * Sole Constructor - Initialises the period between ticks and the most
+     * ticks run for a single poll, with the first tick due on the first poll
+     * @param period long - time between ticks, in nanoseconds
+     * @param maxCatchUp int - most ticks run for a single poll, which must
+     * cover the ticks falling due between polls at the shortest period
+     */
+    public TickScheduler(long period, int maxCatchUp) {
+        if (maxCatchUp < 1) throw new IllegalArgumentException("Must run at least one tick a poll: " + maxCatchUp);
+        this.maxCatchUp = maxCatchUp;
+        setPeriod(period);
+        started = false;
+    }
+
+    /**
+     * Accessor for private class variable period
+     * @return long - time between ticks, in nanoseconds
+     */
+    public long getPeriod() { return period; }
+
+    /**
+     * Mutator for private class variable period. Ticks after the next one
+     * are spaced by the new period.
+     * @param period long - time between ticks, in nanoseconds
+     */
+    public void setPeriod(long period) {
+        if (period <= 0) throw new IllegalArgumentException("Tick period must be positive: " + period);
+        this.period = period;
+    }
+
+    /**
+     * Restarts the schedule, so that the next tick is due on the next poll
+     */
+    public void restart() {
+        started = false;
+    }
+
+    /**
+     * Works out how many ticks have fallen due by the given time and moves
+     * the schedule past them
+     * @param now long - current time, from System.nanoTime
+     * @return int - number of ticks to run now (at most maxCatchUp)
+     */
+    public int due(long now) {
+        if (!started) {
+            nextTick = now;
+            started = true;
+        }
+
+        long ahead = now + (period >> 1) - nextTick;
+        if (ahead < 0) return 0;
+
+        long ticks = ahead / period + 1;
+        if (ticks > maxCatchUp) {
+            // Too far behind (e.g. after a GC pause): drop the backlog
+            nextTick = now + period;
+            return maxCatchUp;
+        }
+        nextTick += ticks * period;
+        return (int) ticks;
+    }
+
+    /**
+     * Waits until the next tick is due, for a thread driving the game itself
+     * rather than being polled
+     */
+    public void awaitTick() {
+        awaitTick(Long.MAX_VALUE);
+    }
+
+    /**
+     * Waits until the next tick is due or the given time is reached,
+     * whichever comes first, for a thread that also has other work to do at
+     * set times (e.g. showing frames)
+     * @param deadline long - latest time to wait until, from System.nanoTime
+     */
+    public void awaitTick(long deadline) {
+        if (!started) return;
+        long wait;
+        while ((wait = Math.min(nextTick - (period >> 1), deadline) - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class for stepping a batch of headless Snake games in lockstep, e.g. for
+ * training learning controllers. Each step takes one action per game, makes
+ * one update of every game across a number of threads, and writes what each
+ * game looks like afterwards into one contiguous off-heap buffer, with the
+ * reward and whether the game has ended into primitive arrays. A game that
+ * ends is started again straight away, so its observation is of the new
+ * game and stepping can carry on without resets.
+ * The games are split into one fixed slice per thread when the batch is
+ * created. The calling thread steps the first slice and a worker thread,
+ * started once and parked between steps, steps each of the others; workers
+ * are woken by a new generation and the last to finish wakes the caller.
+ * Unlike a fork/join pool, whose joins allocate when they have to wait,
+ * handing over a step this way does not allocate, and neither does stepping
+ * a game. Only the cells of a game that changed in the step are rewritten in
+ * its observation.
+ * Game i of a batch plays the sequence of games seeded by seed + i, so a run
+ * is reproducible whatever the number of threads.
+ *
+ * Observation of each game, getObservationSize() bytes apart (native order):
+ *   int  head       - packed cell index (y * width + x) of the head
+ *   int  apple      - packed cell index of the apple, or -1 if there is none
+ *   int  direction  - Direction ordinal the snake is moving in
+ *   int  length     - length of the snake
+ *   byte[width * height] grid - EMPTY, BODY, HEAD, APPLE, ROBOT (a
+ *                    teleporter) or WALL for each packed cell
+ * Actions are Direction ordinals; turning back on itself is ignored, as for
+ * the keyboard.
+ *
+ * Private Snake[] snakes - the games of the batch
+ * Private Level level - level every game is played on
+ * Private int cells - number of cells on each board
+ * Private int stride - bytes between the observations of consecutive games
+ * Private int maxSteps - steps after which a game is cut short (truncated)
+ * Private ByteBuffer observations - off-heap observations of every game
+ * Private float[] rewards - reward of each game for the last step
+ * Private byte[] dones - TERMINATED, TRUNCATED or 0 for each game for the
+ * last step
+ * Private int[] steps - steps made in the current game of each slot
+ * Private int[] heads - head cell written to each observation, or -1
+ * Private int[] apples - apple cell written to each observation, or -1
+ * Private int[] actions - actions of the step being made
+ * Private long episodes - number of games ended so far
+ * Private Worker[] workers - threads stepping every slice but the first
+ * Private Thread caller - thread that created the batch and steps it
+ * Private volatile long generation - number of steps handed to the workers
+ * Private AtomicInteger remaining - workers yet to finish the current step
+ * Private volatile boolean running - whether the workers should carry on
+ */
+public class VectorEnv {
+
+    public static final int HEAD_OFFSET = 0;
+    public static final int APPLE_OFFSET = 4;
+    public static final int DIRECTION_OFFSET = 8;
+    public static final int LENGTH_OFFSET = 12;
+    public static final int GRID_OFFSET = 16;
+    // Contents of a cell in the grid of an observation
+    public static final byte EMPTY = 0;
+    public static final byte BODY = 1;
+    public static final byte HEAD = 2;
+    public static final byte APPLE = 3;
+    public static final byte ROBOT = 4;
+    public static final byte WALL = 5;
+    // Values of dones
+    public static final byte TERMINATED = 1;
+    public static final byte TRUNCATED = 2;
+    public static final float REWARD_APPLE = 1f;
+    public static final float REWARD_DEATH = -1f;
+    private static final Snake.Direction DIRECTIONS[] = Snake.Direction.values();
+
+    private Snake snakes[];
+    private Level level;
+    private int cells;
+    private int stride;
+    private int maxSteps;
+    private ByteBuffer observations;
+    private float rewards[];
+    private byte dones[];
+    private int steps[];
+    private int heads[];
+    private int apples[];
+    private int actions[];
+    private long episodes;
+    private Worker workers[];
+    private Thread caller;
+    private volatile long generation;
+    private AtomicInteger remaining;
+    private volatile boolean running;
+
+    /**
+     * Constructor - Creates a batch of games on the open level of the given
+     * size
+     * @param games int - number of games in the batch
+     * @param width int - number of columns on each board
+     * @param height int - number of rows on each board
+     * @param seed long - seed of the games of slot 0; slot i uses seed + i
+     * @param maxSteps int - steps after which a game is cut short
+     * @param threads int - number of threads to step games on, including
+     * the calling thread, which is the only one that may step the batch
+     */
+    public VectorEnv(int games, int width, int height, long seed, int maxSteps, int threads) {
+        this(games, Level.open(width, height), seed, maxSteps, threads);
+    }
+
+    /**
+     * Constructor - Creates the games of the batch on the given level and the
+     * buffers they are observed into, and splits the games between the given
+     * number of threads. The games are not started until reset() is called.
+     * @param games int - number of games in the batch
+     * @param level Level object - level every game is played on
+     * @param seed long - seed of the games of slot 0; slot i uses seed + i
+     * @param maxSteps int - steps after which a game is cut short
+     * @param threads int - number of threads to step games on, including
+     * the calling thread, which is the only one that may step the batch
+     */
+    public VectorEnv(int games, Level level, long seed, int maxSteps, int threads) {
+        this.level = level;
+        snakes = new Snake[games];
+        for (int i = 0; i < games; i++) {
+            snakes[i] = new Snake(level, seed + i);
+        }
+        cells = level.getWidth() * level.getHeight();
+        // Keep each observation 8-byte aligned
+        stride = (GRID_OFFSET + cells + 7) & ~7;
+        if ((long) stride * games > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Observations of " + games + " games of " + level.getWidth() + "x" + level.getHeight() + " do not fit in a buffer");
+        }
+        this.maxSteps = maxSteps;
+        observations = ByteBuffer.allocateDirect(stride * games).order(ByteOrder.nativeOrder());
+        rewards = new float[games];
+        dones = new byte[games];
+        steps = new int[games];
+        heads = new int[games];
+        apples = new int[games];
+
+        caller = Thread.currentThread();
+        remaining = new AtomicInteger();
+        running = true;
+        workers = new Worker[Math.max(0, Math.min(games, threads) - 1)];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = new Worker(w + 1);
+            workers[w].start();
+        }
+    }
+
+    /**
+     * Accessor for the number of games in the batch
+     * @return int - number of games
+     */
+    public int getGames() { return snakes.length; }
+
+    /**
+     * Accessor for private class variable stride
+     * @return int - bytes between the observations of consecutive games
+     */
+    public int getObservationSize() { return stride; }
+
+    /**
+     * Accessor for private class variable observations
+     * @return ByteBuffer object - off-heap buffer holding the observation of
+     * game i at byte i * getObservationSize(), rewritten by every step
+     */
+    public ByteBuffer getObservations() { return observations; }
+
+    /**
+     * Accessor for private class variable rewards
+     * @return float[] - reward of each game for the last step, rewritten by
+     * every step
+     */
+    public float[] getRewards() { return rewards; }
+
+    /**
+     * Accessor for private class variable dones
+     * @return byte[] - TERMINATED if each game ended in the last step,
+     * TRUNCATED if it was cut short, or 0; rewritten by every step
+     */
+    public byte[] getDones() { return dones; }
+
+    /**
+     * Accessor for private class variable episodes
+     * @return long - number of games ended (terminated or truncated) so far
+     */
+    public long getEpisodes() { return episodes; }
+
+    /**
+     * Accessor for the game in a slot, e.g. for a bot choosing its action
+     * @param i int - index of the game
+     * @return Snake object - current game of the slot (not to be changed)
+     */
+    public Snake getSnake(int i) { return snakes[i]; }
+
+    /**
+     * Starts a new game in every slot and writes their observations, with
+     * no rewards and nothing done
+     */
+    public void reset() {
+        for (int i = 0; i < snakes.length; i++) {
+            start(i);
+            observe(i);
+            rewards[i] = 0;
+            dones[i] = 0;
+        }
+    }
+
+    /**
+     * Makes one update of every game with the given actions, writing the
+     * observations, rewards and dones, and starting a new game in each slot
+     * whose game ended
+     * @param actions int[] - Direction ordinal to move each game in
+     */
+    public void step(int[] actions) {
+        if (actions.length < snakes.length) throw new IllegalArgumentException("Need " + snakes.length + " actions");
+        this.actions = actions;
+
+        if (workers.length > 0) {
+            // Hand the other slices to the workers, waking them with a new generation
+            remaining.set(workers.length);
+            generation++;
+            for (Worker worker : workers) {
+                LockSupport.unpark(worker);
+            }
+        }
+        advance(0);
+        while (remaining.get() > 0) {
+            LockSupport.park(this);
+        }
+
+        for (byte done : dones) {
+            if (done != 0) episodes++;
+        }
+    }
+
+    /**
+     * Stops the worker threads once no more steps will be made
+     */
+    public void shutdown() {
+        running = false;
+        generation++;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * Steps each game of a slice
+     * @param slice int - index of the slice (0 for the calling thread)
+     */
+    private void advance(int slice) {
+        int games = snakes.length;
+        int slices = workers.length + 1;
+        int to = (int) ((long) games * (slice + 1) / slices);
+        for (int i = (int) ((long) games * slice / slices); i < to; i++) {
+            advanceGame(i);
+        }
+    }
+
+    /**
+     * Thread stepping one slice of the games on every step, waiting parked
+     * in between
+     * Private int slice - index of the slice stepped by the thread
+     */
+    private class Worker extends Thread {
+
+        private int slice;
+
+        /**
+         * Sole Constructor - Creates a daemon thread for the given slice
+         */
+        Worker(int slice) {
+            super("snake-env-" + slice);
+            this.slice = slice;
+            setDaemon(true);
+        }
+
+        /**
+         * {@inheritDoc}
+         * Waits for each new generation, steps the slice and tells the
+         * calling thread once the last slice is done.
+         */
+        @Override
+        public void run() {
+            long seen = 0;
+            while (true) {
+                while (generation == seen) {
+                    LockSupport.park(this);
+                }
+                seen = generation;
+                if (!running) return;
+                advance(slice);
+                if (remaining.decrementAndGet() == 0) LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    /**
+     * Makes one update of a game with its action, working out its reward
+     * and whether it has ended, and writes its observation. Only touches the
+     * slot of the given game, so slots can be stepped on different threads.
+     * @param i int - index of the game
+     */
+    private void advanceGame(int i) {
+        Snake snake = snakes[i];
+        int length = snake.getLength();
+        snake.setDirection(DIRECTIONS[actions[i] & 3]);
+        snake.update();
+        steps[i]++;
+
+        float reward = (snake.getLength() > length) ? REWARD_APPLE : 0f;
+        byte done = 0;
+        if (snake.isGameOver()) {
+            if (!snake.isWon()) reward = REWARD_DEATH;
+            done = TERMINATED;
+        } else if (steps[i] >= maxSteps) {
+            done = TRUNCATED;
+        }
+        rewards[i] = reward;
+        dones[i] = done;
+
+        if (done != 0) start(i);
+        observe(i);
+    }
+
+    /**
+     * Starts the next game in a slot
+     * @param i int - index of the game
+     */
+    private void start(int i) {
+        snakes[i].reset();
+        snakes[i].setAlive();
+        steps[i] = 0;
+        heads[i] = -1;
+        apples[i] = -1;
+    }
+
+    /**
+     * Writes the observation of a game: the whole grid after a new game has
+     * started, otherwise only the cells changed since it was last written,
+     * along with the cells the head and apple have moved from and to
+     * @param i int - index of the game
+     */
+    private void observe(int i) {
+        Snake snake = snakes[i];
+        int base = i * stride;
+        int grid = base + GRID_OFFSET;
+
+        if (snake.isRedrawAll()) {
+            for (int cell = 0; cell < cells; cell++) {
+                observations.put(grid + cell, contents(snake, cell));
+            }
+        } else {
+            for (int c = 0; c < snake.getChangeCount(); c++) {
+                int cell = snake.getChangeCell(c);
+                observations.put(grid + cell, contents(snake, cell));
+            }
+        }
+        snake.clearChanges();
+
+        // The old head and apple are body or the level now, unless drawn again below
+        int head = snake.getBodyCell(0);
+        int apple = snake.getAppleCell();
+        if (heads[i] >= 0 && heads[i] != head) {
+            observations.put(grid + heads[i], contents(snake, heads[i]));
+        }
+        if (apples[i] >= 0 && apples[i] != apple) {
+            observations.put(grid + apples[i], contents(snake, apples[i]));
+        }
+        if (apple >= 0) observations.put(grid + apple, APPLE);
+        observations.put(grid + head, HEAD);
+        heads[i] = head;
+        apples[i] = apple;
+
+        observations.putInt(base + HEAD_OFFSET, head);
+        observations.putInt(base + APPLE_OFFSET, apple);
+        observations.putInt(base + DIRECTION_OFFSET, snake.getDirection().ordinal());
+        observations.putInt(base + LENGTH_OFFSET, snake.getLength());
+    }
+
+    /**
+     * Finds what a cell of a game holds, other than the head and apple
+     * @param snake Snake object - game to look at
+     * @param cell int - packed cell index (y * width + x)
+     * @return byte - BODY, WALL, ROBOT or EMPTY
+     */
+    private byte contents(Snake snake, int cell) {
+        if (snake.isBodyCell(cell)) return BODY;
+        if (level.isWall(cell)) return WALL;
+        return level.isTeleporter(cell) ? ROBOT : EMPTY;
+    }
+
+    /**
+     * Steps a batch of games with random actions and prints the rate of
+     * steps, as a measure of how fast agents could be trained against it
+     * @param args String[] - optionally the number of games, number of
+     * steps and number of threads
+     */
+    public static void main(String[] args) {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 1024;
+        int count = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        VectorEnv env = new VectorEnv(games, Level.getDefault(), 0, 10_000, threads);
+        int actions[] = new int[games];
+        SplittableRandom random = new SplittableRandom(0);
+        env.reset();
+
+        long start = System.nanoTime();
+        double total = 0;
+        for (int s = 0; s < count; s++) {
+            for (int i = 0; i < games; i++) {
+                actions[i] = random.nextInt(4);
+            }
+            env.step(actions);
+            for (float reward : env.getRewards()) {
+                total += reward;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        env.shutdown();
+
+        System.out.printf("%d games, %d threads: %d steps in %.2fs (%.0f env steps/s), %d episodes, total reward %.0f%n",
+            games, threads, count, seconds, (double) games * count / seconds, env.getEpisodes(), total);
+    }
+}
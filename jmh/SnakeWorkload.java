@@ -0,0 +1,142 @@
+import bench.Workload;
+
+/**
+ * Workload of the JMH benchmarks in bench.SnakeJmh, run headless. It lives in
+ * the default package with the game, which classes in a named package (as JMH
+ * requires benchmarks to be) cannot refer to, and is created by name.
+ * The board is the smallest square (of even width, at least 4) whose free
+ * cells the snake fills to at most the given ratio, so the same length is
+ * measured on boards of different sizes. The snake is laid out along the Route
+ * of SnakeBenchmark and follows it, so it never dies or grows.
+ * Private int length - length of the snake
+ * Private SnakeBenchmark.Route route - cycle the snake is laid out along
+ * Private Snake snake - snake game benchmarked
+ * Private GameFrame gameFrame - framework drawing the game, headless
+ * Private SnakeState state - search state loaded from the game
+ * Private SnakeState copy - search state that state is copied into
+ * Private Direction move - move along the route made by stateMoveUndo
+ * Private int probe - index of the last body cell checked by selfCollision
+ */
+public class SnakeWorkload implements Workload {
+
+    private final int length;
+    private final SnakeBenchmark.Route route;
+    private final Snake snake;
+    private final GameFrame gameFrame;
+    private final SnakeState state;
+    private final SnakeState copy;
+    private Snake.Direction move;
+    private int probe;
+
+    /**
+     * Sole Constructor - Sizes the board for the length and fill ratio and
+     * builds the game on it
+     * @param length int - length of the snake, at least 2
+     * @param fill double - largest fraction of the free cells the snake
+     * covers, above 0
+     */
+    public SnakeWorkload(int length, double fill) {
+        this.length = length;
+        int width = (int) Math.ceil(Math.sqrt(length / fill + 1));
+        width = Math.max(4, width + (width % 2));
+        // The snake must be shorter than the cycle to move along it
+        while (length >= width * (width - 1)) {
+            width += 2;
+        }
+        route = new SnakeBenchmark.Route(width);
+        snake = new Snake(width, width, 0);
+        HeadlessGame headless = new HeadlessGame(route::follow);
+        gameFrame = new GameFrame(headless, headless, snake);
+        state = new SnakeState(snake);
+        copy = new SnakeState(snake);
+    }
+
+    /**
+     * Lays the snake out along the route again, so that every iteration
+     * starts from the same position
+     */
+    @Override
+    public void reset() {
+        route.load(snake, length);
+        state.load(snake);
+        move = route.follow(snake);
+        probe = 0;
+    }
+
+    /**
+     * Moves the snake one cell along the route
+     */
+    @Override
+    public void update() {
+        snake.setDirection(route.follow(snake));
+        snake.update();
+        snake.clearChanges();
+    }
+
+    /**
+     * Checks whether the next cell of the body is part of the snake
+     * @return boolean - result of the check
+     */
+    @Override
+    public boolean selfCollision() {
+        if (++probe == length) probe = 0;
+        return snake.isBody(route.getCell(probe));
+    }
+
+    /**
+     * Picks a random free cell, as done when placing an apple
+     * @return int - the cell picked
+     */
+    @Override
+    public int generateCell() {
+        return snake.generateCell();
+    }
+
+    /**
+     * Moves the snake one cell along the route and draws the changes
+     */
+    @Override
+    public void updateAndDraw() {
+        snake.setDirection(route.follow(snake));
+        gameFrame.update();
+        gameFrame.draw(false);
+    }
+
+    /**
+     * Redraws the whole board
+     */
+    @Override
+    public void drawFull() {
+        gameFrame.draw(true);
+    }
+
+    /**
+     * Makes and undoes a move of the search state
+     * @return int - result of the move
+     */
+    @Override
+    public int stateMoveUndo() {
+        int result = state.move(move);
+        state.undo();
+        return result;
+    }
+
+    /**
+     * Copies the search state and hashes the copy
+     * @return long - hash of the copy
+     */
+    @Override
+    public long stateCopy() {
+        copy.copyFrom(state);
+        return copy.getHash();
+    }
+
+    /**
+     * Renders the board as text
+     * @return int - length of the text
+     */
+    @Override
+    public int getText() {
+        return gameFrame.getText().length();
+    }
+}
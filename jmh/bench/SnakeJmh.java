@@ -0,0 +1,115 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the hot paths of the game logic and framework, with the
+ * snake length and the fill ratio of the board as separate parameters: the
+ * board is sized so the snake covers at most the given fraction of it (see
+ * SnakeWorkload). Run with -prof gc to report the allocation rate and the
+ * bytes allocated per operation (gc.alloc.rate.norm) of each benchmark.
+ * Private int length - length of the snake
+ * Private double fill - largest fraction of the free cells the snake covers
+ * Private Workload workload - game the benchmarks operate on
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class SnakeJmh {
+
+    @Param({"6", "100", "450", "900"})
+    private int length;
+
+    @Param({"0.1", "0.5", "0.95"})
+    private double fill;
+
+    private Workload workload;
+
+    /**
+     * Creates the game for the length and fill ratio
+     * @throws ReflectiveOperationException if SnakeWorkload cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setupGame() throws ReflectiveOperationException {
+        workload = (Workload) Class.forName("SnakeWorkload")
+            .getConstructor(int.class, double.class).newInstance(length, fill);
+    }
+
+    /**
+     * Puts the game back into its starting position, so that every iteration
+     * starts from the same position
+     */
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        workload.reset();
+    }
+
+    /**
+     * Moves the snake one cell along the route
+     */
+    @Benchmark
+    public void update() { workload.update(); }
+
+    /**
+     * Checks whether a cell of the body is part of the snake
+     * @return boolean - result of the check
+     */
+    @Benchmark
+    public boolean selfCollision() { return workload.selfCollision(); }
+
+    /**
+     * Picks a random free cell, as done when placing an apple
+     * @return int - the cell picked
+     */
+    @Benchmark
+    public int generateCell() { return workload.generateCell(); }
+
+    /**
+     * Moves the snake one cell along the route and draws the changes
+     */
+    @Benchmark
+    public void updateAndDraw() { workload.updateAndDraw(); }
+
+    /**
+     * Redraws the whole board
+     */
+    @Benchmark
+    public void drawFull() { workload.drawFull(); }
+
+    /**
+     * Makes and undoes a move of the search state
+     * @return int - result of the move
+     */
+    @Benchmark
+    public int stateMoveUndo() { return workload.stateMoveUndo(); }
+
+    /**
+     * Copies the search state and hashes the copy
+     * @return long - hash of the copy
+     */
+    @Benchmark
+    public long stateCopy() { return workload.stateCopy(); }
+
+    /**
+     * Renders the board as text
+     * @return int - length of the text
+     */
+    @Benchmark
+    public int getText() { return workload.getText(); }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+/**
+ * Operations benchmarked by SnakeJmh. The game is in the default package,
+ * which a benchmark in a named package cannot refer to, so the operations are
+ * implemented by SnakeWorkload in the default package and reached through
+ * this interface. There is only one implementation, so the calls are inlined.
+ */
+public interface Workload {
+
+    /**
+     * Puts the game back into its starting position
+     */
+    void reset();
+
+    /**
+     * Moves the snake one cell
+     */
+    void update();
+
+    /**
+     * Checks whether a cell of the body is part of the snake
+     * @return boolean - result of the check
+     */
+    boolean selfCollision();
+
+    /**
+     * Picks a random free cell
+     * @return int - the cell picked
+     */
+    int generateCell();
+
+    /**
+     * Moves the snake one cell and draws the changes
+     */
+    void updateAndDraw();
+
+    /**
+     * Redraws the whole board
+     */
+    void drawFull();
+
+    /**
+     * Makes and undoes a move of the search state
+     * @return int - result of the move
+     */
+    int stateMoveUndo();
+
+    /**
+     * Copies the search state and hashes the copy
+     * @return long - hash of the copy
+     */
+    long stateCopy();
+
+    /**
+     * Renders the board as text
+     * @return int - length of the text
+     */
+    int getText();
+}
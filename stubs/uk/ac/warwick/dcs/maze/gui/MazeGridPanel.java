@@ -0,0 +1,42 @@
+package uk.ac.warwick.dcs.maze.gui;
+
+import java.awt.Color;
+
+/**
+ * Stand-in for the panel that displays the maze in the maze-environment,
+ * with the private static final colour fields that the MazeBridge overwrites
+ * by name. Nothing is displayed; the colours can be read back to check that
+ * they were changed.
+ * Private static Color WALLBG - background colour of wall squares
+ * Private static Color PASSAGEBG - background colour of passage squares
+ * Private static Color BEENBG - background colour of squares visited before
+ */
+public class MazeGridPanel {
+
+    private static final Color WALLBG = Color.BLACK;
+    private static final Color PASSAGEBG = Color.WHITE;
+    private static final Color BEENBG = Color.GRAY;
+
+    /**
+     * Not instantiated: only the colours are used
+     */
+    private MazeGridPanel() {}
+
+    /**
+     * Accessor for private class variable WALLBG
+     * @return Color object - background colour of wall squares
+     */
+    public static Color getWallColour() { return WALLBG; }
+
+    /**
+     * Accessor for private class variable PASSAGEBG
+     * @return Color object - background colour of passage squares
+     */
+    public static Color getPassageColour() { return PASSAGEBG; }
+
+    /**
+     * Accessor for private class variable BEENBG
+     * @return Color object - background colour of squares visited before
+     */
+    public static Color getBeenBeforeColour() { return BEENBG; }
+}
@@ -0,0 +1,37 @@
+package uk.ac.warwick.dcs.maze.logic;
+
+/**
+ * Stand-in for the events broadcast through the EventBus of the
+ * maze-environment: a message and the data sent with it.
+ * Private int message - message of the event, e.g. IEvent.NEW_MAZE
+ * Private Object data - data sent with the event
+ */
+public class Event implements IEvent {
+
+    private int message;
+    private Object data;
+
+    /**
+     * Sole Constructor - Creates an event with the given message and data
+     * @param message int - message of the event, e.g. IEvent.NEW_MAZE
+     * @param data Object - data sent with the event
+     */
+    public Event(int message, Object data) {
+        this.message = message;
+        this.data = data;
+    }
+
+    /**
+     * Accessor for private class variable message
+     * @return int - message of the event
+     */
+    @Override
+    public int getMessage() { return message; }
+
+    /**
+     * Accessor for private class variable data
+     * @return Object - data sent with the event
+     */
+    @Override
+    public Object getData() { return data; }
+}
@@ -0,0 +1,64 @@
+package uk.ac.warwick.dcs.maze.logic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stand-in for the EventBus of the maze-environment. Instead of handing
+ * events on to the display of the maze, it counts how many of each message
+ * have been broadcast and remembers the last event of each, so a harness can
+ * check what the controller asked the environment to do. The controller
+ * only broadcasts from the thread polling it, but the counts are kept in
+ * atomic arrays so they can be read from any thread.
+ * Private static int MESSAGES - number of messages counted separately; any
+ * other message is counted with the last
+ * Private static AtomicLongArray counts - number of events broadcast of each
+ * message
+ * Private static AtomicReferenceArray last - last event broadcast of each message
+ */
+public class EventBus {
+
+    private static final int MESSAGES = 4;
+
+    private static final AtomicLongArray counts = new AtomicLongArray(MESSAGES);
+    private static final AtomicReferenceArray<IEvent> last = new AtomicReferenceArray<>(MESSAGES);
+
+    /**
+     * Not instantiated: the bus is used through its static methods
+     */
+    private EventBus() {}
+
+    /**
+     * Broadcasts an event, which here only counts it and remembers it as the
+     * last of its message
+     * @param event IEvent object - event to broadcast
+     */
+    public static void broadcast(IEvent event) {
+        int message = slot(event.getMessage());
+        counts.incrementAndGet(message);
+        last.set(message, event);
+    }
+
+    /**
+     * Returns the number of events broadcast with the given message
+     * @param message int - message of the events, e.g. IEvent.NEW_MAZE
+     * @return long - number broadcast so far
+     */
+    public static long getCount(int message) { return counts.get(slot(message)); }
+
+    /**
+     * Returns the last event broadcast with the given message
+     * @param message int - message of the event, e.g. IEvent.DELAY
+     * @return IEvent object - last event broadcast, or null if there was none
+     */
+    public static IEvent getLast(int message) { return last.get(slot(message)); }
+
+    /**
+     * Finds the slot a message is counted in
+     * @param message int - message of an event
+     * @return int - index into counts and last
+     */
+    private static int slot(int message) {
+        return (message >= 0 && message < MESSAGES) ? message : MESSAGES - 1;
+    }
+}
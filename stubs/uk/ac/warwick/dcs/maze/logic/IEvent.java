@@ -0,0 +1,30 @@
+package uk.ac.warwick.dcs.maze.logic;
+
+/**
+ * Stand-in for the event interface of the maze-environment, with only the
+ * messages the game broadcasts. The real interface comes with the
+ * maze-environment jar (property of the University); this one only exists so
+ * the controller can be compiled and exercised without it, e.g. by the
+ * SoakHarness.
+ * Public static int NEW_MAZE - message telling the environment the maze has
+ * changed and should be displayed again
+ * Public static int DELAY - message telling the environment to change the
+ * delay between polls, with the new delay in milliseconds as its data
+ */
+public interface IEvent {
+
+    public static final int NEW_MAZE = 1;
+    public static final int DELAY = 2;
+
+    /**
+     * Returns the message of the event
+     * @return int - one of the message constants above
+     */
+    public int getMessage();
+
+    /**
+     * Returns the data sent with the event
+     * @return Object - data of the event (e.g. the maze, or the new delay)
+     */
+    public Object getData();
+}
@@ -0,0 +1,10 @@
+package uk.ac.warwick.dcs.maze.logic;
+
+/**
+ * Stand-in for the robot interface of the maze-environment. The game only
+ * uses the robot as a handle that the MazeBridge looks up the robot's maze
+ * and active fields through, so none of the robot's movement is modelled
+ * and nothing is declared here.
+ */
+public interface IRobot {
+}
@@ -0,0 +1,80 @@
+package uk.ac.warwick.dcs.maze.logic;
+
+import java.awt.Point;
+
+/**
+ * Stand-in for the maze of the maze-environment, with the private fields
+ * that the MazeBridge replaces by name: the grid of cell types, indexed by
+ * [x][y], and the start and finish of the maze.
+ * Public static int WALL, PASSAGE, BEENBEFORE - types of cell in the grid
+ * Private int[][] grid - type of each cell of the maze, indexed by [x][y]
+ * Private Point start - where the robot is placed
+ * Private Point finish - target of the maze
+ */
+public class Maze {
+
+    public static final int WALL = 1;
+    public static final int PASSAGE = 2;
+    public static final int BEENBEFORE = 3;
+
+    private int grid[][];
+    private Point start;
+    private Point finish;
+
+    /**
+     * Sole Constructor - Creates a maze of the given size with every cell a
+     * passage, starting in the top-left corner and finishing in the bottom-right
+     * @param width int - number of columns of the maze
+     * @param height int - number of rows of the maze
+     */
+    public Maze(int width, int height) {
+        grid = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                grid[x][y] = PASSAGE;
+            }
+        }
+        start = new Point(0, 0);
+        finish = new Point(width - 1, height - 1);
+    }
+
+    /**
+     * Returns the number of columns of the maze
+     * @return int - width of the grid
+     */
+    public int getWidth() { return grid.length; }
+
+    /**
+     * Returns the number of rows of the maze
+     * @return int - height of the grid
+     */
+    public int getHeight() { return grid.length == 0 ? 0 : grid[0].length; }
+
+    /**
+     * Returns the type of a cell of the maze
+     * @param x int - column of the cell
+     * @param y int - row of the cell
+     * @return int - WALL, PASSAGE or BEENBEFORE
+     */
+    public int getCellType(int x, int y) { return grid[x][y]; }
+
+    /**
+     * Changes the type of a cell of the maze
+     * @param x int - column of the cell
+     * @param y int - row of the cell
+     * @param type int - WALL, PASSAGE or BEENBEFORE
+     */
+    public void setCellType(int x, int y, int type) { grid[x][y] = type; }
+
+    /**
+     * Accessor for private class variable start
+     * @return Point object - where the robot is placed
+     */
+    public Point getStart() { return start; }
+
+    /**
+     * Accessor for private class variable finish
+     * @return Point object - target of the maze
+     */
+    public Point getFinish() { return finish; }
+}
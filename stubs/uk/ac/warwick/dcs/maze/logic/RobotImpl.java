@@ -0,0 +1,35 @@
+package uk.ac.warwick.dcs.maze.logic;
+
+/**
+ * Stand-in for the robot of the maze-environment, with the private fields
+ * that the MazeBridge looks up by name: the maze the robot is in and whether
+ * it is active.
+ * Private Maze maze - maze the robot is in
+ * Private boolean active - whether the robot moves when the environment is run
+ */
+public class RobotImpl implements IRobot {
+
+    private Maze maze;
+    private boolean active;
+
+    /**
+     * Sole Constructor - Places an active robot in the given maze
+     * @param maze Maze object - maze the robot is in
+     */
+    public RobotImpl(Maze maze) {
+        this.maze = maze;
+        active = true;
+    }
+
+    /**
+     * Accessor for private class variable maze
+     * @return Maze object - maze the robot is in
+     */
+    public Maze getMaze() { return maze; }
+
+    /**
+     * Accessor for private class variable active
+     * @return boolean - true if the robot is active, else false
+     */
+    public boolean isActive() { return active; }
+}